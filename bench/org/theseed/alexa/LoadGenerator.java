@@ -0,0 +1,271 @@
+package org.theseed.alexa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class replays mixed skill traffic at a target rate and reports the latency percentiles and
+ * error counts.  The traffic is sent either directly to a {@link SeedQueryHandler} in this JVM or to
+ * a skill server (see {@link SeedServer}) over HTTP.  Combined with the stand-in SEED server in the
+ * test tree (StubSeedServer), this lets us measure capacity and tail latency without the real SEED.
+ *
+ * The load is open-loop:  requests are started on a fixed schedule whether or not earlier requests
+ * have finished, and each latency is measured from the scheduled start time, so a stalled back end
+ * shows up in the percentiles instead of silently lowering the request rate.
+ *
+ * Each request is one of the JSON fixtures in the test assets directory, chosen at random according
+ * to the traffic mix.  A response is counted as an error if the request fails outright, and as
+ * degraded if the skill answered with one of its "SEED is slow, busy or unavailable" apologies.
+ *
+ * The positional parameter is the target:  "handler" (the default) to call the handler in this JVM,
+ * or the URL of a skill server.  In handler mode, use the "seedUrl" setting to point the handler at
+ * a stand-in server.  The following settings (see {@link SeedConfig}) control the load.
+ *
+ *  loadRate            requests per second (default 50)
+ *  loadDuration        seconds to run (default 30)
+ *  loadWarmup          seconds to run before recording latencies (default 5)
+ *  loadMix             traffic mix, as comma-separated fixture=weight pairs (default
+ *                      "genome=4,protein=3,peg=3,text=2,launch=1,help=1")
+ *  loadAssets          directory of the JSON fixtures (default "tst/testAssets")
+ */
+public class LoadGenerator {
+
+    /** default traffic mix */
+    private static final String DEFAULT_MIX = "genome=4,protein=3,peg=3,text=2,launch=1,help=1";
+
+    /** request fixtures, one entry per unit of weight */
+    private final List<String> requests;
+    /** handler to call in handler mode, or NULL in server mode */
+    private final SeedQueryHandler handler;
+    /** server URL in server mode, or NULL in handler mode */
+    private final String url;
+    /** recorded latencies in microseconds */
+    private long[] latencies;
+    /** number of latencies recorded */
+    private int latencyCount;
+    /** number of requests completed */
+    private final AtomicLong completeCount;
+    /** number of requests that failed */
+    private final AtomicLong errorCount;
+    /** number of requests answered with an apology */
+    private final AtomicLong degradedCount;
+
+    /**
+     * Construct a load generator.
+     *
+     * @param target       "handler" to call a handler in this JVM, or the URL of a skill server
+     * @param assetDir     directory containing the JSON fixtures
+     * @param mix          traffic mix, as comma-separated fixture=weight pairs
+     *
+     * @throws IOException if a fixture cannot be read
+     */
+    public LoadGenerator(String target, String assetDir, String mix) throws IOException {
+        this.requests = new ArrayList<String>();
+        for (String spec : mix.split(",")) {
+            String[] parts = spec.trim().split("=");
+            int weight = (parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+            byte[] encoded = Files.readAllBytes(Paths.get(assetDir, parts[0] + "test.json"));
+            String request = new String(encoded, StandardCharsets.UTF_8);
+            for (int i = 0; i < weight; i++) {
+                this.requests.add(request);
+            }
+        }
+        if ("handler".equals(target)) {
+            this.handler = new SeedQueryHandler();
+            this.url = null;
+        } else {
+            this.handler = null;
+            this.url = target;
+        }
+        this.latencies = new long[1024];
+        this.completeCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.degradedCount = new AtomicLong();
+    }
+
+    /**
+     * Run the load.
+     *
+     * @param rate        requests per second
+     * @param warmup      seconds to run before recording latencies
+     * @param duration    seconds to record latencies
+     *
+     * @throws InterruptedException if the run is interrupted
+     */
+    public void run(int rate, int warmup, int duration) throws InterruptedException {
+        ExecutorService workers = Executors.newCachedThreadPool();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final long start = System.nanoTime();
+        final long recordStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        final long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        final AtomicLong sequence = new AtomicLong();
+        scheduler.scheduleAtFixedRate(() -> {
+            // Compute the intended start from the schedule, not the clock, to avoid coordinated omission.
+            final long intended = start + sequence.getAndIncrement() * interval;
+            workers.execute(() -> this.send(intended, intended >= recordStart));
+        }, 0, interval, TimeUnit.NANOSECONDS);
+        TimeUnit.SECONDS.sleep(warmup + duration);
+        scheduler.shutdownNow();
+        workers.shutdown();
+        if (! workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Send one request and record the outcome.
+     *
+     * @param intended    intended start time in nanoseconds
+     * @param record      TRUE if the outcome should be recorded
+     */
+    private void send(long intended, boolean record) {
+        String request = this.requests.get(ThreadLocalRandom.current().nextInt(this.requests.size()));
+        String response;
+        try {
+            if (this.handler != null) {
+                response = this.handler.handleRequest(request, null);
+            } else {
+                response = post(this.url, request);
+            }
+        } catch (IOException e) {
+            response = null;
+        }
+        long elapsed = (System.nanoTime() - intended) / 1000;
+        if (record) {
+            this.completeCount.incrementAndGet();
+            if (isError(response)) {
+                this.errorCount.incrementAndGet();
+            } else if (response.contains(SeedUnavailableException.TIMEOUT)
+                    || response.contains(SeedUnavailableException.UNAVAILABLE)
+                    || response.contains(SeedUnavailableException.BUSY)) {
+                this.degradedCount.incrementAndGet();
+            }
+            this.recordLatency(elapsed);
+        }
+    }
+
+    /**
+     * @return TRUE if a response shows that the request failed:  there is no response, the handler
+     *         could not process the request, or the SEED query failed unexpectedly
+     *
+     * @param response    response to the request, or NULL if there was none
+     */
+    static boolean isError(String response) {
+        return (response == null || response.contains(SeedQueryHandler.ERROR_TEXT)
+                || response.contains(SeedQuerySpeechlet.FATAL_ERROR_TEXT));
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param micros    latency in microseconds
+     */
+    private synchronized void recordLatency(long micros) {
+        if (this.latencyCount == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.latencyCount * 2);
+        }
+        this.latencies[this.latencyCount++] = micros;
+    }
+
+    /**
+     * @return the response to a request POSTed to a skill server
+     *
+     * @param url        URL of the skill server
+     * @param request    request JSON
+     *
+     * @throws IOException if the request fails
+     */
+    static String post(String url, String request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(request.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        if (status != 200) {
+            connection.getErrorStream().close();
+            throw new IOException("Skill server returned status " + status + ".");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        try (InputStream in = connection.getInputStream()) {
+            byte[] chunk = new byte[1024];
+            int n = in.read(chunk);
+            while (n >= 0) {
+                buffer.write(chunk, 0, n);
+                n = in.read(chunk);
+            }
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the specified percentile of the recorded latencies, in milliseconds
+     *
+     * @param sorted    sorted latencies in microseconds
+     * @param pct       percentile to compute (0 to 100)
+     */
+    private static double percentile(long[] sorted, double pct) {
+        double retVal = 0.0;
+        if (sorted.length > 0) {
+            int idx = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(pct / 100.0 * sorted.length) - 1));
+            retVal = sorted[idx] / 1000.0;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a printable report of the recorded outcomes
+     *
+     * @param seconds    number of seconds over which the outcomes were recorded
+     */
+    public synchronized String getReport(int seconds) {
+        long[] sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+        Arrays.sort(sorted);
+        long complete = this.completeCount.get();
+        return String.format("requests=%d, throughput=%.1f/s, errors=%d, degraded=%d, p50=%.1fms, p95=%.1fms, "
+                + "p99=%.1fms, max=%.1fms", complete, complete / (double) seconds, this.errorCount.get(),
+                this.degradedCount.get(), percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                percentile(sorted, 100));
+    }
+
+    /**
+     * Run a load test and print the report.
+     *
+     * @param args    optional target:  "handler" (default) or the URL of a skill server
+     *
+     * @throws IOException if a fixture cannot be read
+     * @throws InterruptedException if the run is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String target = (args.length > 0 ? args[0] : "handler");
+        int rate = SeedConfig.getInt("loadRate", 50);
+        int duration = SeedConfig.getInt("loadDuration", 30);
+        int warmup = SeedConfig.getInt("loadWarmup", 5);
+        LoadGenerator generator = new LoadGenerator(target, SeedConfig.getString("loadAssets", "tst/testAssets"),
+                SeedConfig.getString("loadMix", DEFAULT_MIX));
+        System.out.printf("Sending %d requests per second to %s for %d seconds after a %d-second warmup.%n",
+                rate, target, duration, warmup);
+        generator.run(rate, warmup, duration);
+        System.out.println(generator.getReport(duration));
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This is a JMH benchmark of the end-to-end skill request path.  Each intent type is driven through
+ * {@link SeedQueryHandler#handleRequest(String, com.amazonaws.services.lambda.runtime.Context)} using
+ * the JSON fixtures in the test assets directory, with the SEED server replaced by a stub, so the
+ * results measure request parsing, dispatch, glossary lookup and response serialization only.
+ *
+ * The benchmark reports throughput, average time and sampled latency percentiles for each intent type,
+ * and the main method adds the GC profiler to report the allocation rate.  The JMH annotation processor
+ * (jmh-generator-annprocess) must be on the annotation processor path when this folder is compiled.
+ * Run it from the project directory; the "seed.benchAssets" system property overrides the fixture
+ * directory (default "tst/testAssets").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dseed.prime=false", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn" })
+public class SeedQueryBenchmark {
+
+    /** answer returned by the stub SEED source */
+    private static final SeedSource STUB_SOURCE = (action, parameter) ->
+            "There are 12345 " + parameter + " in the SEED.";
+
+    /** name of the fixture to use:  the file name is this plus "test.json" */
+    @Param({ "genome", "protein", "peg", "text", "launch", "help" })
+    public String intent;
+
+    /** handler under test */
+    private SeedQueryHandler handler;
+
+    /** request JSON */
+    private String request;
+
+    /**
+     * Create the handler and load the request fixture.
+     *
+     * @throws IOException if the fixture cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String assets = System.getProperty("seed.benchAssets", "tst/testAssets");
+        byte[] encoded = Files.readAllBytes(Paths.get(assets, this.intent + "test.json"));
+        this.request = new String(encoded, StandardCharsets.UTF_8);
+        this.handler = new SeedQueryHandler(STUB_SOURCE);
+    }
+
+    /**
+     * @return the response to one skill request
+     */
+    @Benchmark
+    public String handleRequest() {
+        return this.handler.handleRequest(this.request, null);
+    }
+
+    /**
+     * Run the benchmark with the GC profiler.  Any JMH command-line options are also accepted.
+     *
+     * @param args    JMH command-line options
+     *
+     * @throws RunnerException if the benchmark fails
+     * @throws CommandLineOptionException if the command-line options are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                .include(SeedQueryBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+}
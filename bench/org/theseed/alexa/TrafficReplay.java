@@ -0,0 +1,229 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class replays a traffic capture log (see {@link TrafficCapture}) through the skill and reports
+ * how the latencies compare with those in a baseline log.  By default the baseline is the replayed
+ * log itself, so the report compares this build with the build that captured the traffic.  To compare
+ * two builds directly, replay the same log under each one with the "captureFile" setting on, and use
+ * the first build's new log as the baseline for the second.
+ *
+ * The requests are sent at their original spacing divided by the speed-up factor, or as fast as the
+ * workers allow if the factor is 0.  With a speed-up factor, each latency is measured from the
+ * scheduled start time, so queueing delays show up in the results.
+ *
+ * The baseline times are measured inside the handler that captured them, while the replay times are
+ * measured by this client, so the replay times also include any queueing here and, against a
+ * server, the network and the server's own request handling.  The report says so.  For a
+ * like-for-like comparison of two servers, turn on the "captureFile" setting on the server during
+ * each replay and compare the two server-side logs (see {@link TrafficCapture#read(File)}).
+ *
+ * The positional parameters are the name of the capture log and optionally the target:  "handler"
+ * (the default) to call the handler in this JVM, or the URL of a skill server.  In handler mode, use
+ * the "seedUrl" setting to point the handler at a stand-in server (StubSeedServer in the test tree).
+ * The following settings (see {@link SeedConfig}) control the replay.
+ *
+ *  replaySpeed         speed-up factor (default 1, the original speed; 0 for as fast as possible)
+ *  replayThreads       number of requests in progress at once (default 8)
+ *  replayBaseline      capture log with the baseline latencies (default the replayed log)
+ */
+public class TrafficReplay {
+
+    /** records to replay, in arrival order */
+    private final List<TrafficCapture.Record> records;
+    /** handler to call in handler mode, or NULL in server mode */
+    private final SeedQueryHandler handler;
+    /** server URL in server mode, or NULL in handler mode */
+    private final String url;
+    /** map of request names to replay latencies in microseconds */
+    private final Map<String, List<Long>> latencies;
+    /** number of requests that failed */
+    private final AtomicLong errorCount;
+
+    /**
+     * Construct a traffic replay.
+     *
+     * @param records    records to replay
+     * @param target     "handler" to call a handler in this JVM, or the URL of a skill server
+     */
+    public TrafficReplay(List<TrafficCapture.Record> records, String target) {
+        this.records = new ArrayList<TrafficCapture.Record>(records);
+        this.records.sort(Comparator.comparingLong(TrafficCapture.Record::getTime));
+        if ("handler".equals(target)) {
+            this.handler = new SeedQueryHandler();
+            this.url = null;
+        } else {
+            this.handler = null;
+            this.url = target;
+        }
+        this.latencies = new TreeMap<String, List<Long>>();
+        this.errorCount = new AtomicLong();
+    }
+
+    /**
+     * Replay the records.
+     *
+     * @param speed      speed-up factor, or 0 to send as fast as possible
+     * @param threads    number of requests in progress at once
+     *
+     * @throws InterruptedException if the replay is interrupted
+     */
+    public void run(double speed, int threads) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        if (! this.records.isEmpty()) {
+            long start = System.nanoTime();
+            long first = this.records.get(0).getTime();
+            for (final TrafficCapture.Record record : this.records) {
+                final long intended = (speed > 0 ? start + (long) ((record.getTime() - first) * 1000000 / speed) : 0);
+                long wait = intended - System.nanoTime();
+                while (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = intended - System.nanoTime();
+                }
+                workers.execute(() -> this.send(record, intended));
+            }
+        }
+        workers.shutdown();
+        if (! workers.awaitTermination(10, TimeUnit.MINUTES)) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Send one request and record its latency.
+     *
+     * @param record      record to send
+     * @param intended    scheduled start time in nanoseconds, or 0 to measure from the actual start
+     */
+    private void send(TrafficCapture.Record record, long intended) {
+        long start = (intended > 0 ? intended : System.nanoTime());
+        String response;
+        try {
+            if (this.handler != null) {
+                response = this.handler.handleRequest(record.getRequest(), null);
+            } else {
+                response = LoadGenerator.post(this.url, record.getRequest());
+            }
+        } catch (IOException e) {
+            response = null;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000;
+        if (LoadGenerator.isError(response)) {
+            this.errorCount.incrementAndGet();
+        }
+        synchronized (this.latencies) {
+            this.latencies.computeIfAbsent(record.getName(), k -> new ArrayList<Long>()).add(elapsed);
+        }
+    }
+
+    /**
+     * @return the specified percentile of a list of latencies, in milliseconds
+     *
+     * @param values    latencies in microseconds
+     * @param pct       percentile to compute (0 to 100)
+     */
+    private static double percentile(List<Long> values, double pct) {
+        double retVal = 0.0;
+        if (! values.isEmpty()) {
+            long[] sorted = new long[values.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = values.get(i);
+            }
+            Arrays.sort(sorted);
+            int idx = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(pct / 100.0 * sorted.length) - 1));
+            retVal = sorted[idx] / 1000.0;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a printable comparison of the replay latencies with the latencies in a baseline log,
+     *         one line per request name plus a line for all requests
+     *
+     * @param baseline    records from the baseline log
+     */
+    public String getReport(List<TrafficCapture.Record> baseline) {
+        Map<String, List<Long>> before = new TreeMap<String, List<Long>>();
+        for (TrafficCapture.Record record : baseline) {
+            before.computeIfAbsent(record.getName(), k -> new ArrayList<Long>()).add((long) record.getTotalMicros());
+        }
+        StringBuilder retVal = new StringBuilder(512);
+        retVal.append(this.handler != null ? "base = handler time in the baseline log; new = client time in this JVM"
+                : "base = handler time in the baseline log; new = client time to " + this.url
+                        + ", including the network (not a like-for-like comparison)").append(String.format("%n"));
+        retVal.append(String.format("%-24s %8s %10s %10s %10s %10s %10s%n", "request", "count", "base_p50",
+                "new_p50", "base_p99", "new_p99", "p99_diff"));
+        List<Long> allBefore = new ArrayList<Long>();
+        List<Long> allAfter = new ArrayList<Long>();
+        synchronized (this.latencies) {
+            for (Map.Entry<String, List<Long>> entry : this.latencies.entrySet()) {
+                List<Long> old = before.getOrDefault(entry.getKey(), new ArrayList<Long>());
+                appendLine(retVal, entry.getKey(), old, entry.getValue());
+                allBefore.addAll(old);
+                allAfter.addAll(entry.getValue());
+            }
+        }
+        appendLine(retVal, "all", allBefore, allAfter);
+        retVal.append("errors=").append(this.errorCount.get());
+        return retVal.toString();
+    }
+
+    /**
+     * Append a comparison line to a report.
+     *
+     * @param report    report being built
+     * @param name      request name
+     * @param before    baseline latencies in microseconds
+     * @param after     replay latencies in microseconds
+     */
+    private static void appendLine(StringBuilder report, String name, List<Long> before, List<Long> after) {
+        double p99Before = percentile(before, 99);
+        double p99After = percentile(after, 99);
+        String diff = (p99Before > 0 ? String.format("%+.1f%%", (p99After - p99Before) * 100 / p99Before) : "n/a");
+        report.append(String.format("%-24s %8d %8.1fms %8.1fms %8.1fms %8.1fms %10s%n", name, after.size(),
+                percentile(before, 50), percentile(after, 50), p99Before, p99After, diff));
+    }
+
+    /**
+     * Replay a capture log and print the comparison report.
+     *
+     * @param args    name of the capture log, and optional target:  "handler" (default) or the URL of a
+     *                skill server
+     *
+     * @throws IOException if a log cannot be read
+     * @throws InterruptedException if the replay is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: TrafficReplay captureFile [target]");
+            System.exit(1);
+        }
+        String target = (args.length > 1 ? args[1] : "handler");
+        List<TrafficCapture.Record> records = TrafficCapture.read(new File(args[0]));
+        String baselineFile = SeedConfig.getString("replayBaseline", args[0]);
+        List<TrafficCapture.Record> baseline = (baselineFile.equals(args[0]) ? records
+                : TrafficCapture.read(new File(baselineFile)));
+        double speed = SeedConfig.getDouble("replaySpeed", 1.0);
+        int threads = SeedConfig.getInt("replayThreads", 8);
+        System.out.printf("Replaying %d requests from %s to %s at speed %s with %d threads.%n", records.size(),
+                args[0], target, (speed > 0 ? speed + "x" : "maximum"), threads);
+        TrafficReplay replay = new TrafficReplay(records, target);
+        replay.run(speed, threads);
+        System.out.println(replay.getReport(baseline));
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.theseed.alexa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class tracks the most frequently requested keys in a fixed amount of memory.  The request
+ * counts are estimated with a count-min sketch:  each key is counted in one cell of each of several
+ * rows, and its estimate is the smallest of those cells, which can be too high (because of other
+ * keys sharing a cell) but never too low.  Alongside the sketch, a small table holds the keys with
+ * the highest estimates seen so far.
+ *
+ * Recording a key is lock-free unless it is a candidate for the table.  The counts can be aged (see
+ * {@link #decay()}) so that keys that were popular long ago give way to the current ones.
+ */
+public class AccessSketch {
+
+    /** number of rows in the sketch */
+    private static final int DEPTH = 4;
+
+    /** sketch counters, one row after another */
+    private final AtomicLongArray counts;
+    /** number of counters in each row (a power of 2) */
+    private final int width;
+    /** maximum number of keys in the table */
+    private final int topSize;
+    /** map of the most frequent keys to their estimated counts; all access must be synchronized on it */
+    private final Map<String, Long> top;
+    /** smallest estimate in the table once it is full, or 0 if it is not full */
+    private volatile long floor;
+
+    /**
+     * Construct an access sketch.
+     *
+     * @param width      minimum number of counters in each row; it is rounded up to a power of 2
+     * @param topSize    number of most frequent keys to keep
+     */
+    public AccessSketch(int width, int topSize) {
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.counts = new AtomicLongArray(DEPTH * this.width);
+        this.topSize = topSize;
+        this.top = new HashMap<String, Long>(topSize * 4 / 3 + 1);
+        this.floor = 0;
+    }
+
+    /**
+     * @return the position of a key's counter in a row of the sketch, derived from the two halves of
+     *         the key's hash by double hashing
+     *
+     * @param h      64-bit hash of the key
+     * @param row    row of the sketch
+     */
+    private int index(long h, int row) {
+        int step = (int) (h >>> 32) | 1;
+        return row * this.width + (((int) h + row * step) & (this.width - 1));
+    }
+
+    /**
+     * Record a request for a key.
+     *
+     * @param key    key requested
+     */
+    public void record(String key) {
+        long h = SeedUtils.hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            estimate = Math.min(estimate, this.counts.incrementAndGet(this.index(h, i)));
+        }
+        if (estimate > this.floor) {
+            synchronized (this.top) {
+                this.top.put(key, estimate);
+                if (this.top.size() > this.topSize) {
+                    String lowest = null;
+                    long lowCount = Long.MAX_VALUE;
+                    for (Map.Entry<String, Long> entry : this.top.entrySet()) {
+                        if (entry.getValue() < lowCount) {
+                            lowest = entry.getKey();
+                            lowCount = entry.getValue();
+                        }
+                    }
+                    this.top.remove(lowest);
+                }
+                if (this.top.size() >= this.topSize) {
+                    this.floor = this.top.values().stream().mapToLong(Long::longValue).min().orElse(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the estimated number of requests for a key
+     *
+     * @param key    key of interest
+     */
+    public long estimate(String key) {
+        long h = SeedUtils.hash(key);
+        long retVal = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            retVal = Math.min(retVal, this.counts.get(this.index(h, i)));
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the most frequent keys, most frequent first
+     */
+    public List<String> getTop() {
+        List<Map.Entry<String, Long>> entries;
+        synchronized (this.top) {
+            entries = new ArrayList<Map.Entry<String, Long>>(this.top.entrySet());
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<String> retVal = new ArrayList<String>(entries.size());
+        for (Map.Entry<String, Long> entry : entries) {
+            retVal.add(entry.getKey());
+        }
+        return retVal;
+    }
+
+    /**
+     * Halve all the counts, so that older requests carry less weight than newer ones.  Keys whose
+     * count drops to 0 leave the table.
+     */
+    public void decay() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.getAndUpdate(i, v -> v >> 1);
+        }
+        synchronized (this.top) {
+            this.top.replaceAll((k, v) -> v >> 1);
+            this.top.values().removeIf(v -> v == 0);
+            this.floor = (this.top.size() < this.topSize ? 0
+                    : this.top.values().stream().mapToLong(Long::longValue).min().orElse(0));
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the sketch counters
+     */
+    public long getMemoryBytes() {
+        return this.counts.length() * 8L;
+    }
+
+    /**
+     * @return a printable summary of the sketch
+     */
+    public String getStats() {
+        int tracked;
+        synchronized (this.top) {
+            tracked = this.top.size();
+        }
+        return String.format("width=%d, depth=%d, bytes=%d, tracked=%d, floor=%d", this.width, DEPTH,
+                this.getMemoryBytes(), tracked, this.floor);
+    }
+
+}
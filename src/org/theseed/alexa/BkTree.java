@@ -0,0 +1,128 @@
+package org.theseed.alexa;
+
+import java.util.Arrays;
+
+/**
+ * This class is a Burkhard-Keller tree of words, which allows a fast search for the word closest
+ * to a query within a bounded edit distance.  Each child of a node is filed under its edit distance
+ * from the node, so the triangle inequality lets a search skip most of the tree.
+ */
+class BkTree {
+
+    /** root of the tree, or NULL if the tree is empty */
+    private Node root;
+
+    /**
+     * This class represents a node in the tree.
+     */
+    private static class Node {
+        /** word in this node */
+        private final String word;
+        /** children, indexed by distance from this node's word */
+        private Node[] children;
+
+        /**
+         * Create a node.
+         *
+         * @param word    word for this node
+         */
+        private Node(String word) {
+            this.word = word;
+            this.children = new Node[4];
+        }
+    }
+
+    /**
+     * Add a word to the tree.  Duplicate words are ignored.
+     *
+     * @param word    word to add
+     */
+    public void add(String word) {
+        if (this.root == null) {
+            this.root = new Node(word);
+        } else {
+            Node node = this.root;
+            int d = distance(word, node.word);
+            while (d > 0) {
+                if (d >= node.children.length) {
+                    node.children = Arrays.copyOf(node.children, d + 4);
+                }
+                Node child = node.children[d];
+                if (child == null) {
+                    node.children[d] = new Node(word);
+                    d = 0;
+                } else {
+                    node = child;
+                    d = distance(word, node.word);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the word in the tree closest to a query word, or NULL if no word is within the
+     *         specified distance
+     *
+     * @param word           query word
+     * @param maxDistance    maximum permissible edit distance
+     */
+    public String search(String word, int maxDistance) {
+        String retVal = null;
+        if (this.root != null) {
+            Node[] stack = new Node[16];
+            stack[0] = this.root;
+            int top = 1;
+            int best = maxDistance + 1;
+            while (top > 0) {
+                Node node = stack[--top];
+                int d = distance(word, node.word);
+                if (d < best) {
+                    best = d;
+                    retVal = node.word;
+                }
+                // Only children whose distance is within the current bound of ours can contain a match.
+                int bound = best - 1;
+                int lo = Math.max(1, d - bound);
+                int hi = Math.min(node.children.length - 1, d + bound);
+                for (int i = lo; i <= hi; i++) {
+                    Node child = node.children[i];
+                    if (child != null) {
+                        if (top >= stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the Levenshtein edit distance between two strings
+     *
+     * @param a    first string
+     * @param b    second string
+     */
+    public static int distance(String a, String b) {
+        int n = b.length();
+        int[] prev = new int[n + 1];
+        int[] curr = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = (ca == b.charAt(j - 1) ? 0 : 1);
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+        return prev[n];
+    }
+
+}
@@ -0,0 +1,279 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps the most popular SEED answers in the {@link SeedCache} so that they never have to
+ * wait for the SEED.  Every query that reaches the cache is recorded in an {@link AccessSketch}, which
+ * tracks the most frequent action/parameter pairs.
+ *
+ * At startup, the cache is warmed in parallel from the hot-key list saved by an earlier run plus any
+ * keys already tracked, within a time limit (see {@link #warm(long)}).  After that, a background task
+ * runs at a fixed interval.  It refreshes every hot answer that is missing from the cache or will go
+ * stale within the look-ahead time, saves the hot-key list, and ages the access counts.  The list is
+ * also saved when the JVM shuts down, unless saving is turned off or the list is empty.  In Lambda the
+ * background task only runs while the container is thawed, and the task directory is read-only, so
+ * the list is saved only if the file is somewhere writable; otherwise the list saved by a server run
+ * can be bundled with the skill.
+ *
+ * The hot-key list is UTF-8 text with one line per key, most frequent first:  the action, the
+ * parameter, and the estimated request count, separated by tabs.
+ */
+public class CacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    /** answer cache to keep warm */
+    private final SeedCache cache;
+    /** tracker of the most frequent keys */
+    private final AccessSketch sketch;
+    /** hot-key list file */
+    private final File file;
+    /** TRUE if the hot-key list should be saved */
+    private final boolean saving;
+    /** milliseconds between background refreshes */
+    private final long interval;
+    /** answers that go stale within this many milliseconds are refreshed */
+    private final long ahead;
+    /** executor for the loads */
+    private final ExecutorService loader;
+    /** scheduler for the background task */
+    private final ScheduledExecutorService scheduler;
+    /** TRUE once the background task has been started */
+    private final AtomicBoolean started;
+    /** number of answers loaded at startup */
+    private final AtomicLong warmCount;
+    /** number of answers refreshed in the background */
+    private final AtomicLong refreshCount;
+    /** number of loads that failed */
+    private final AtomicLong failCount;
+
+    /**
+     * Construct a cache warmer.
+     *
+     * @param cache       answer cache to keep warm
+     * @param sketch      tracker of the most frequent keys
+     * @param file        hot-key list file
+     * @param saving      TRUE if the hot-key list should be saved, FALSE if it is only read
+     * @param threads     number of loads to run at once
+     * @param interval    milliseconds between background refreshes
+     * @param ahead       answers that go stale within this many milliseconds are refreshed; this should
+     *                    be more than the interval
+     */
+    public CacheWarmer(SeedCache cache, AccessSketch sketch, File file, boolean saving, int threads, long interval,
+            long ahead) {
+        this.cache = cache;
+        this.sketch = sketch;
+        this.file = file;
+        this.saving = saving;
+        this.interval = interval;
+        this.ahead = ahead;
+        this.loader = Executors.newFixedThreadPool(threads, r -> {
+            Thread retVal = new Thread(r, "CacheWarmer");
+            retVal.setDaemon(true);
+            return retVal;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread retVal = new Thread(r, "CacheWarmerSchedule");
+            retVal.setDaemon(true);
+            return retVal;
+        });
+        this.started = new AtomicBoolean();
+        this.warmCount = new AtomicLong();
+        this.refreshCount = new AtomicLong();
+        this.failCount = new AtomicLong();
+    }
+
+    /**
+     * Record a query that reached the cache.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    public void record(String action, String parameter) {
+        if (parameter != null) {
+            this.sketch.record(SeedCache.key(action, parameter));
+        }
+    }
+
+    /**
+     * Warm the cache from the saved hot-key list and the keys already tracked.  The loads run in
+     * parallel, and any still running when the time limit is reached finish in the background.
+     *
+     * @param timeout    maximum milliseconds to wait
+     *
+     * @return the number of answers loaded within the time limit
+     */
+    public int warm(long timeout) {
+        Set<String> keys = new LinkedHashSet<String>(readList(this.file));
+        keys.addAll(this.sketch.getTop());
+        List<CompletableFuture<Void>> loads = this.submit(keys, this.warmCount);
+        try {
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]))
+                    .get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.info("Cache warming not finished after {} ms.", timeout);
+        } catch (ExecutionException e) {
+            // Failed loads are counted where they occur.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int retVal = 0;
+        for (CompletableFuture<Void> load : loads) {
+            if (load.isDone()) {
+                retVal++;
+            }
+        }
+        log.info("{} of {} hot answers checked during cache warming.", retVal, keys.size());
+        return retVal;
+    }
+
+    /**
+     * Queue a refresh of each key whose answer is missing or about to go stale.
+     *
+     * @param keys       cache keys to check
+     * @param counter    counter for the answers loaded
+     *
+     * @return a list of futures for the refreshes
+     */
+    private List<CompletableFuture<Void>> submit(Iterable<String> keys, final AtomicLong counter) {
+        List<CompletableFuture<Void>> retVal = new ArrayList<CompletableFuture<Void>>();
+        for (final String key : keys) {
+            retVal.add(CompletableFuture.runAsync(() -> this.refreshIfNeeded(key, counter), this.loader));
+        }
+        return retVal;
+    }
+
+    /**
+     * Refresh the answer for a key if it is missing or about to go stale.
+     *
+     * @param key        cache key
+     * @param counter    counter for the answers loaded
+     */
+    private void refreshIfNeeded(String key, AtomicLong counter) {
+        String[] parts = key.split("\t", 2);
+        if (parts.length == 2 && this.cache.getTimeLeft(parts[0], parts[1]) <= this.ahead) {
+            try {
+                this.cache.refresh(parts[0], parts[1]);
+                counter.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                this.failCount.incrementAndGet();
+                log.debug("Could not warm {} {}: {}", parts[0], parts[1], e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start the background task, if it is not already running.
+     */
+    public void start() {
+        if (this.started.compareAndSet(false, true)) {
+            this.scheduler.scheduleWithFixedDelay(this::cycle, this.interval, this.interval, TimeUnit.MILLISECONDS);
+            if (this.saving) {
+                Runtime.getRuntime().addShutdownHook(new Thread(this::save, "CacheWarmerSave"));
+            }
+        }
+    }
+
+    /**
+     * Run one pass of the background task:  refresh the hot answers, save the hot-key list, and age
+     * the access counts.
+     */
+    protected void cycle() {
+        this.submit(this.sketch.getTop(), this.refreshCount);
+        this.save();
+        this.sketch.decay();
+    }
+
+    /**
+     * Save the hot-key list, unless saving is turned off or there are no hot keys.  Failures are
+     * logged and otherwise ignored, since the file may be on a read-only file system.
+     */
+    public void save() {
+        List<String> keys = this.sketch.getTop();
+        if (this.saving && ! keys.isEmpty()) {
+            StringBuilder text = new StringBuilder(1024);
+            for (String key : keys) {
+                text.append(key).append('\t').append(this.sketch.estimate(key)).append('\n');
+            }
+            try {
+                SeedUtils.writeAtomically(this.file, text.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.debug("Could not save hot-key list {}: {}", this.file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the cache keys in a hot-key list file, most frequent first, or an empty list if the
+     *         file does not exist or cannot be read
+     *
+     * @param file    hot-key list file
+     */
+    public static List<String> readList(File file) {
+        List<String> retVal = new ArrayList<String>();
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length >= 2) {
+                    retVal.add(SeedCache.key(parts[0], parts[1]));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.info("No hot-key list found at {}.", file);
+        } catch (IOException e) {
+            log.error("Could not read hot-key list {}: {}", file, e.getMessage());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the tracker of the most frequent keys
+     */
+    public AccessSketch getSketch() {
+        return this.sketch;
+    }
+
+    /**
+     * @return the number of answers loaded at startup
+     */
+    public long getWarmCount() {
+        return this.warmCount.get();
+    }
+
+    /**
+     * @return the number of answers refreshed in the background
+     */
+    public long getRefreshCount() {
+        return this.refreshCount.get();
+    }
+
+    /**
+     * @return a printable summary of the warmer statistics
+     */
+    public String getStats() {
+        return String.format("warmed=%d, refreshed=%d, failures=%d, %s", this.getWarmCount(), this.getRefreshCount(),
+                this.failCount.get(), this.sketch.getStats());
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.theseed.alexa;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+/**
+ * This class tracks the deadline for the request being processed by the current thread.  The Speechlet
+ * interface gives us no way to pass the Lambda context down to the SEED client, so the handler stores
+ * the deadline in a thread-local when the request arrives and the back end layers consult it.  A thread
+ * that is not processing a request (such as a background cache refresh) has no deadline.
+ *
+ * The deadline is the earlier of the Lambda remaining time (less a safety margin for building and
+ * sending the response) and the request budget.  The request budget is what applies in server mode,
+ * where there is no Lambda context.
+ *
+ * The following settings (see {@link SeedConfig}) control the deadline.
+ *
+ *  requestBudget       maximum milliseconds to spend on a request (default 6000)
+ *  deadlineMargin      milliseconds reserved at the end of a Lambda invocation (default 500)
+ */
+public class Deadline {
+
+    /** maximum milliseconds to spend on a request */
+    private static final long BUDGET = SeedConfig.getLong("requestBudget", 6000);
+    /** milliseconds reserved at the end of a Lambda invocation */
+    private static final long MARGIN = SeedConfig.getLong("deadlineMargin", 500);
+
+    /** deadline for each thread, in milliseconds since the epoch; 0 means no deadline */
+    private static final ThreadLocal<long[]> DEADLINE = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Start the deadline for a new request.
+     *
+     * @param context    Lambda context for the request, or NULL if there is none
+     */
+    public static void start(Context context) {
+        long budget = BUDGET;
+        if (context != null) {
+            budget = Math.min(budget, context.getRemainingTimeInMillis() - MARGIN);
+        }
+        set(System.currentTimeMillis() + budget);
+    }
+
+    /**
+     * Set the deadline for the current thread.
+     *
+     * @param deadline    deadline in milliseconds since the epoch, or 0 for no deadline
+     */
+    public static void set(long deadline) {
+        DEADLINE.get()[0] = deadline;
+    }
+
+    /**
+     * @return the deadline for the current thread in milliseconds since the epoch, or 0 if there is none
+     */
+    public static long get() {
+        return DEADLINE.get()[0];
+    }
+
+    /**
+     * @return the number of milliseconds left before the deadline, or {@link Long#MAX_VALUE} if there is none
+     */
+    public static long remaining() {
+        long deadline = DEADLINE.get()[0];
+        return (deadline == 0 ? Long.MAX_VALUE : deadline - System.currentTimeMillis());
+    }
+
+    /**
+     * Remove the deadline for the current thread.
+     */
+    public static void clear() {
+        DEADLINE.get()[0] = 0;
+    }
+
+}
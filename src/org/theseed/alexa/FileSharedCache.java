@@ -0,0 +1,161 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is a shared cache of SEED answers kept in a directory, one file per key.  It works on a
+ * local disk for testing and on a shared file system (such as EFS mounted into every Lambda container)
+ * to share answers between instances.
+ *
+ * The file name is a 64-bit hash of the key (see {@link GenomeFilter}) in hexadecimal.  Each file is UTF-8 text with four
+ * lines:  the format version, the expiration time in milliseconds, the key (to detect hash
+ * collisions), and the answer.  Files are written to a temporary name and then renamed, so a
+ * reader never sees a partial entry.  Expired files are left in place and overwritten by the next
+ * store.
+ *
+ * The file operations run on a small fixed pool of threads with a bounded queue, so a slow file system
+ * cannot tie up more than a fixed number of threads.  A lookup or store that does not fit in the queue
+ * is skipped, and a skipped lookup is a miss.
+ */
+public class FileSharedCache implements SharedCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSharedCache.class);
+
+    /** directory containing the entries */
+    private final File dir;
+    /** executor for the file operations */
+    private final ExecutorService executor;
+    /** number of lookups */
+    private final AtomicLong lookupCount;
+    /** number of stores */
+    private final AtomicLong storeCount;
+    /** number of file errors */
+    private final AtomicLong errorCount;
+    /** number of operations skipped because the queue was full */
+    private final AtomicLong skipCount;
+
+    /**
+     * Open a file-based shared cache with the default pool size (4 threads) and queue size (64).
+     *
+     * @param dir    directory for the entries; it is created if necessary
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSharedCache(File dir) throws IOException {
+        this(dir, 4, 64);
+    }
+
+    /**
+     * Open a file-based shared cache.
+     *
+     * @param dir          directory for the entries; it is created if necessary
+     * @param threads      number of threads for the file operations
+     * @param queueSize    maximum number of file operations waiting for a thread
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSharedCache(File dir, int threads, int queueSize) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir.toPath());
+        this.lookupCount = new AtomicLong();
+        this.storeCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.skipCount = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), r -> {
+                    Thread retVal = new Thread(r, "FileSharedCache");
+                    retVal.setDaemon(true);
+                    return retVal;
+                });
+    }
+
+    /**
+     * @return the file for a key
+     *
+     * @param key    cache key
+     */
+    private File file(String key) {
+        return new File(this.dir, String.format("%016x", SeedUtils.hash(key)));
+    }
+
+    @Override
+    public CompletableFuture<Entry> lookup(final String key) {
+        this.lookupCount.incrementAndGet();
+        CompletableFuture<Entry> retVal;
+        try {
+            retVal = CompletableFuture.supplyAsync(() -> this.read(key), this.executor);
+        } catch (RejectedExecutionException e) {
+            this.skipCount.incrementAndGet();
+            retVal = CompletableFuture.completedFuture(null);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the entry for a key, or NULL if there is none or it cannot be read
+     *
+     * @param key    cache key
+     */
+    private Entry read(String key) {
+        Entry retVal = null;
+        try {
+            String[] lines = new String(Files.readAllBytes(this.file(key).toPath()), StandardCharsets.UTF_8).split("\n", 4);
+            if (lines.length == 4 && lines[2].equals(key)) {
+                retVal = new Entry(Integer.parseInt(lines[0]), Long.parseLong(lines[1]), lines[3]);
+            }
+        } catch (NoSuchFileException e) {
+            // This is a normal miss.
+        } catch (IOException | NumberFormatException e) {
+            this.errorCount.incrementAndGet();
+            log.debug("Could not read shared cache entry for {}: {}", key, e.getMessage());
+        }
+        return retVal;
+    }
+
+    @Override
+    public void store(final String key, final Entry entry) {
+        this.storeCount.incrementAndGet();
+        try {
+            this.executor.execute(() -> this.write(key, entry));
+        } catch (RejectedExecutionException e) {
+            this.skipCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write the entry for a key.
+     *
+     * @param key      cache key
+     * @param entry    entry to write
+     */
+    private void write(String key, Entry entry) {
+        String text = entry.getVersion() + "\n" + entry.getExpires() + "\n" + key + "\n" + entry.getValue();
+        try {
+            SeedUtils.writeAtomically(this.file(key), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            this.errorCount.incrementAndGet();
+            log.debug("Could not write shared cache entry for {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return String.format("dir=%s, lookups=%d, stores=%d, errors=%d, skipped=%d", this.dir, this.lookupCount.get(),
+                this.storeCount.get(), this.errorCount.get(), this.skipCount.get());
+    }
+
+}
@@ -0,0 +1,298 @@
+package org.theseed.alexa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is a Bloom filter of the genome IDs known to the SEED.  It answers "definitely not a
+ * SEED genome" or "probably a SEED genome" in a few hundred nanoseconds, so that a mis-heard genome
+ * ID can be rejected without a round trip to the SEED.  The filter is built offline from a genome
+ * list by the {@link #main(String[])} method and shipped in the deployment package.  The genome list
+ * has to be exported from the SEED, so the filter is not part of the source tree; without it, only
+ * the ID syntax is checked.
+ *
+ * Each ID is hashed once to 64 bits (see {@link SeedUtils#hash(String)}), and the bit positions are
+ * derived from the two halves of the hash by double hashing.  The number of bits and hash functions
+ * are chosen from the number of IDs and the target false-positive rate.
+ *
+ * The file layout is as follows.  All integers are big-endian.
+ *
+ *  header      8-byte magic string "SEEDBLOM", int format version, int number of hash functions,
+ *              int number of IDs, int number of 64-bit words
+ *  bits        the filter words
+ */
+public class GenomeFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(GenomeFilter.class);
+
+    /** magic string at the start of the file */
+    private static final byte[] MAGIC = "SEEDBLOM".getBytes(StandardCharsets.US_ASCII);
+    /** current format version */
+    private static final int VERSION = 1;
+    /** pattern for a syntactically valid genome ID */
+    private static final Pattern GENOME_ID = Pattern.compile("\\d+\\.\\d+");
+
+    /** filter bits */
+    private final long[] bits;
+    /** number of filter bits */
+    private final long bitCount;
+    /** number of hash functions */
+    private final int hashCount;
+    /** number of IDs added */
+    private int idCount;
+    /** number of checks made */
+    private final AtomicLong checkCount;
+    /** number of checks rejected */
+    private final AtomicLong rejectCount;
+    /** number of accepted IDs later found to be unknown to the SEED */
+    private final AtomicLong falseCount;
+
+    /**
+     * Create an empty filter sized for a number of IDs and a target false-positive rate.
+     *
+     * @param expected    expected number of IDs
+     * @param fpr         target false-positive rate
+     */
+    public GenomeFilter(int expected, double fpr) {
+        int n = Math.max(expected, 1);
+        long m = (long) Math.ceil(-n * Math.log(fpr) / (Math.log(2) * Math.log(2)));
+        int words = (int) ((Math.max(m, 64) + 63) / 64);
+        this.bits = new long[words];
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / n * Math.log(2)));
+        this.checkCount = new AtomicLong();
+        this.rejectCount = new AtomicLong();
+        this.falseCount = new AtomicLong();
+    }
+
+    /**
+     * Create a filter from stored bits.
+     *
+     * @param bits         filter bits
+     * @param hashCount    number of hash functions
+     * @param idCount      number of IDs in the filter
+     */
+    private GenomeFilter(long[] bits, int hashCount, int idCount) {
+        this.bits = bits;
+        this.bitCount = bits.length * 64L;
+        this.hashCount = hashCount;
+        this.idCount = idCount;
+        this.checkCount = new AtomicLong();
+        this.rejectCount = new AtomicLong();
+        this.falseCount = new AtomicLong();
+    }
+
+    /**
+     * @return TRUE if a string has the form of a genome ID (taxon ID, a period, and a version number)
+     *
+     * @param genomeId    string to check
+     */
+    public static boolean isValidId(String genomeId) {
+        return (genomeId != null && GENOME_ID.matcher(genomeId).matches());
+    }
+
+    /**
+     * Add a genome ID to the filter.
+     *
+     * @param genomeId    ID to add
+     */
+    public void add(String genomeId) {
+        long h = SeedUtils.hash(genomeId);
+        long h1 = h & 0xffffffffL;
+        long h2 = h >>> 32;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+            this.bits[(int) (bit >>> 6)] |= (1L << bit);
+        }
+        this.idCount++;
+    }
+
+    /**
+     * @return TRUE if a genome ID may be in the filter, FALSE if it is definitely not
+     *
+     * @param genomeId    ID to check
+     */
+    public boolean mightContain(String genomeId) {
+        this.checkCount.incrementAndGet();
+        long h = SeedUtils.hash(genomeId);
+        long h1 = h & 0xffffffffL;
+        long h2 = h >>> 32;
+        boolean retVal = true;
+        for (int i = 0; retVal && i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+            retVal = ((this.bits[(int) (bit >>> 6)] & (1L << bit)) != 0);
+        }
+        if (! retVal) {
+            this.rejectCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    /**
+     * Record that an ID accepted by the filter turned out to be unknown to the SEED.
+     */
+    public void recordFalsePositive() {
+        this.falseCount.incrementAndGet();
+    }
+
+    /**
+     * @return the expected false-positive rate for the number of IDs in the filter
+     */
+    public double getExpectedFpr() {
+        return Math.pow(1 - Math.exp(-(double) this.hashCount * this.idCount / this.bitCount), this.hashCount);
+    }
+
+    /**
+     * @return the observed false-positive rate:  the fraction of checked IDs that were accepted by
+     *         the filter but unknown to the SEED
+     */
+    public double getObservedFpr() {
+        long checks = this.checkCount.get();
+        return (checks == 0 ? 0.0 : (double) this.falseCount.get() / checks);
+    }
+
+    /**
+     * @return the number of bytes used by the filter bits
+     */
+    public long getMemoryBytes() {
+        return this.bits.length * 8L;
+    }
+
+    /**
+     * @return the number of IDs in the filter
+     */
+    public int getIdCount() {
+        return this.idCount;
+    }
+
+    /**
+     * @return the number of hash functions
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * Write the filter to a file.
+     *
+     * @param file    output file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.hashCount);
+            out.writeInt(this.idCount);
+            out.writeInt(this.bits.length);
+            for (long word : this.bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * @return a filter read from a stream
+     *
+     * @param stream    input stream containing the filter file
+     *
+     * @throws IOException if the stream cannot be read or does not contain a valid filter
+     */
+    public static GenomeFilter read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not a genome filter file.");
+            }
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported genome filter version " + version + ".");
+        }
+        int hashCount = in.readInt();
+        int idCount = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new GenomeFilter(bits, hashCount, idCount);
+    }
+
+    /**
+     * @return the filter in a file, or NULL if the file does not exist or cannot be read
+     *
+     * @param file    filter file to read
+     */
+    public static GenomeFilter load(File file) {
+        GenomeFilter retVal = null;
+        if (! file.exists()) {
+            log.info("No genome filter found at {}.", file);
+        } else {
+            try (InputStream in = new FileInputStream(file)) {
+                retVal = read(in);
+                log.info("Genome filter loaded from {}:  {}", file, retVal.getStats());
+            } catch (IOException e) {
+                log.error("Could not read genome filter {}: {}", file, e.getMessage());
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a printable summary of the filter statistics
+     */
+    public String getStats() {
+        return String.format("ids=%d, hashes=%d, bytes=%d, expected_fpr=%.5f, checks=%d, rejected=%d, "
+                + "false_positives=%d, observed_fpr=%.5f", this.idCount, this.hashCount, this.getMemoryBytes(),
+                this.getExpectedFpr(), this.checkCount.get(), this.rejectCount.get(), this.falseCount.get(),
+                this.getObservedFpr());
+    }
+
+    /**
+     * Build a genome filter file.
+     *
+     * The positional parameters are the name of the output file, the name of the genome list file (one
+     * genome ID per line), and optionally the target false-positive rate (default 0.001).
+     *
+     * @param args    output file name, genome list file name, and optional false-positive rate
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GenomeFilter outFile genomeFile [fpr]");
+            System.exit(1);
+        }
+        double fpr = (args.length > 2 ? Double.parseDouble(args[2]) : 0.001);
+        List<String> genomes = Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8);
+        GenomeFilter filter = new GenomeFilter(genomes.size(), fpr);
+        for (String genome : genomes) {
+            String id = genome.trim();
+            if (isValidId(id)) {
+                filter.add(id);
+            }
+        }
+        filter.write(new File(args[0]));
+        log.info("Genome filter written to {}:  {}", args[0], filter.getStats());
+    }
+
+}
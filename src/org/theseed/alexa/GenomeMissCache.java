@@ -0,0 +1,101 @@
+package org.theseed.alexa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class remembers the genome IDs the SEED recently said it does not know, so that asking about
+ * one of them again does not cost another round trip.  It has a fixed maximum size, and when it fills
+ * up the least-recently-used ID is discarded.  Each ID is forgotten after a time-to-live, in case the
+ * genome has been added to the SEED since.
+ */
+public class GenomeMissCache {
+
+    /** maximum number of IDs to keep */
+    private final int maxSize;
+    /** time-to-live in milliseconds */
+    private final long ttl;
+    /** map of genome IDs to expiration times, in access order; all access must be synchronized on it */
+    private final LinkedHashMap<String, Long> misses;
+    /** number of lookups that found an ID */
+    private final AtomicLong hitCount;
+    /** number of IDs recorded */
+    private final AtomicLong recordCount;
+
+    /**
+     * Construct a genome miss cache.
+     *
+     * @param maxSize    maximum number of IDs to keep
+     * @param ttl        time-to-live in milliseconds
+     */
+    public GenomeMissCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.hitCount = new AtomicLong();
+        this.recordCount = new AtomicLong();
+        this.misses = new LinkedHashMap<String, Long>(maxSize * 4 / 3 + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return (this.size() > GenomeMissCache.this.maxSize);
+            }
+        };
+    }
+
+    /**
+     * Record that the SEED does not know a genome.
+     *
+     * @param genomeId    ID of the unknown genome
+     */
+    public void record(String genomeId) {
+        this.recordCount.incrementAndGet();
+        long expires = System.currentTimeMillis() + this.ttl;
+        synchronized (this.misses) {
+            this.misses.put(genomeId, expires);
+        }
+    }
+
+    /**
+     * @return TRUE if the SEED recently said it does not know a genome
+     *
+     * @param genomeId    ID of the genome to check
+     */
+    public boolean contains(String genomeId) {
+        boolean retVal = false;
+        long now = System.currentTimeMillis();
+        synchronized (this.misses) {
+            Long expires = this.misses.get(genomeId);
+            if (expires != null) {
+                if (now < expires) {
+                    retVal = true;
+                } else {
+                    this.misses.remove(genomeId);
+                }
+            }
+        }
+        if (retVal) {
+            this.hitCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of IDs currently held
+     */
+    public int size() {
+        synchronized (this.misses) {
+            return this.misses.size();
+        }
+    }
+
+    /**
+     * @return a printable summary of the miss cache statistics
+     */
+    public String getStats() {
+        return String.format("size=%d, recorded=%d, hits=%d", this.size(), this.recordCount.get(),
+                this.hitCount.get());
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.theseed.alexa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class builds a compound summary of a genome.  The name, contig count, feature count and
+ * subsystem coverage are separate SEED actions, and they are all sent at once so that the total
+ * latency is close to that of the slowest single query rather than the sum of them.  The summary
+ * waits only until shortly before the request deadline (see {@link Deadline}); any part that has
+ * not arrived by then is reported as missing, so the user gets a partial answer instead of none.
+ *
+ * The queries run on virtual threads if the JVM supports them, and on a cached pool of daemon
+ * threads otherwise.  The following settings (see {@link SeedConfig}) control the summary.
+ *
+ *  summaryReserve      milliseconds before the deadline at which the summary stops waiting, to leave
+ *                      time to build the response (default 250)
+ *  summaryTimeout      maximum milliseconds to wait when there is no deadline (default 3000)
+ */
+public class GenomeSummarizer {
+
+    private static final Logger log = LoggerFactory.getLogger(GenomeSummarizer.class);
+
+    /** SEED actions for the summary parts */
+    protected static final String[] ACTIONS = new String[] { "GenomeName", "GenomeContigs", "GenomeFeatures",
+            "GenomeSubsystems" };
+    /** spoken descriptions of the summary parts, parallel to {@link #ACTIONS} */
+    private static final String[] DESCRIPTIONS = new String[] { "name", "contig count", "feature count",
+            "subsystem coverage" };
+
+    /** source of SEED data */
+    private final SeedSource seed;
+    /** executor for the queries */
+    private final ExecutorService executor;
+    /** milliseconds to reserve before the deadline */
+    private final long reserve;
+    /** maximum milliseconds to wait when there is no deadline */
+    private final long timeout;
+    /** number of summaries built */
+    private final AtomicLong summaryCount;
+    /** number of summaries missing at least one part */
+    private final AtomicLong partialCount;
+
+    /**
+     * Construct a genome summarizer.
+     *
+     * @param seed    source of SEED data
+     */
+    public GenomeSummarizer(SeedSource seed) {
+        this.seed = seed;
+        this.reserve = SeedConfig.getLong("summaryReserve", 250);
+        this.timeout = SeedConfig.getLong("summaryTimeout", 3000);
+        this.summaryCount = new AtomicLong();
+        this.partialCount = new AtomicLong();
+        this.executor = SeedUtils.createExecutor("GenomeSummarizer");
+    }
+
+    /**
+     * @return the sentences of a genome summary, in a fixed order.  A part that failed or did not
+     *         arrive in time is replaced by a sentence saying so.  If no parts arrived, the list is empty.
+     *
+     * @param genomeId    ID of the genome to summarize
+     */
+    public List<String> summarize(String genomeId) {
+        return this.summarize(genomeId, new HashMap<String, String>());
+    }
+
+    /**
+     * @return the sentences of a genome summary, in a fixed order.  Parts whose answers are already
+     *         known are not queried again, and the answers to the parts that are queried successfully
+     *         are added to the known answers.
+     *
+     * @param genomeId    ID of the genome to summarize
+     * @param known       map of action names to answers already known for the genome (updated)
+     */
+    public List<String> summarize(String genomeId, Map<String, String> known) {
+        this.summaryCount.incrementAndGet();
+        final long deadline = Deadline.get();
+        List<CompletableFuture<String>> parts = new ArrayList<CompletableFuture<String>>(ACTIONS.length);
+        for (String action : ACTIONS) {
+            String answer = known.get(action);
+            if (answer != null) {
+                parts.add(CompletableFuture.completedFuture(answer));
+            } else {
+                parts.add(this.launch(action, genomeId, deadline));
+            }
+        }
+        // Wait for all the parts, or until it is time to answer.
+        long wait = Deadline.remaining();
+        wait = (wait == Long.MAX_VALUE ? this.timeout : wait - this.reserve);
+        try {
+            CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[parts.size()]))
+                    .get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Some parts are missing.  We will report what we have.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<String> retVal = new ArrayList<String>(ACTIONS.length);
+        int found = 0;
+        for (int i = 0; i < ACTIONS.length; i++) {
+            CompletableFuture<String> part = parts.get(i);
+            if (! part.isDone()) {
+                part.cancel(true);
+                retVal.add("The " + DESCRIPTIONS[i] + " did not arrive in time.");
+            } else if (part.isCompletedExceptionally()) {
+                retVal.add("The " + DESCRIPTIONS[i] + " is not available.");
+            } else {
+                String answer = part.join();
+                known.put(ACTIONS[i], answer);
+                retVal.add(answer);
+                found++;
+            }
+        }
+        if (found < ACTIONS.length) {
+            this.partialCount.incrementAndGet();
+            log.debug("Summary of {} has {} of {} parts.", genomeId, found, ACTIONS.length);
+        }
+        if (found == 0) {
+            retVal.clear();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a future for a query running on a worker thread
+     *
+     * @param action       name of the action
+     * @param genomeId     ID of the genome
+     * @param deadline     deadline for the query, to be passed to the worker thread
+     */
+    private CompletableFuture<String> launch(final String action, final String genomeId, final long deadline) {
+        final CompletableFuture<String> retVal = new CompletableFuture<String>();
+        this.executor.execute(() -> {
+            Deadline.set(deadline);
+            try {
+                retVal.complete(this.seed.getData(action, genomeId));
+            } catch (Throwable t) {
+                retVal.completeExceptionally(t);
+            } finally {
+                Deadline.clear();
+            }
+        });
+        return retVal;
+    }
+
+    /**
+     * @return a printable summary of the summarizer statistics
+     */
+    public String getStats() {
+        return String.format("summaries=%d, partial=%d", this.summaryCount.get(), this.partialCount.get());
+    }
+
+}
@@ -0,0 +1,279 @@
+package org.theseed.alexa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class manages the glossary of terms the skill can explain.  The glossary is loaded once from
+ * the "glossary.tsv" resource and indexed so that a spoken term can be matched even if the speech
+ * recognizer has mangled it.  A lookup tries, in order,
+ *
+ *  1.  an exact match on a term or alias
+ *  2.  a match on the normalized form (lower case, letters only, trailing plural "s" removed)
+ *  3.  a match on a phonetic key computed from the normalized form
+ *  4.  the closest normalized form within a small edit distance, found with a {@link BkTree}
+ *
+ * The phonetic key of a short word is only two or three letters, so words like "run" and "done"
+ * share keys with "RNA" and "DNA".  A phonetic match is therefore accepted only if the normalized
+ * forms are also within the fuzzy-match edit distance.
+ *
+ * The terms in the glossary file are also the values for the LIST_OF_TERMS slot type, which can be
+ * regenerated by running {@link #main(String[])}.
+ */
+public class Glossary {
+
+    /** name of the glossary resource */
+    private static final String RESOURCE_NAME = "glossary.tsv";
+
+    /** shared instance for this container */
+    private static Glossary instance;
+
+    /** list of slot-type terms, in file order */
+    private final List<String> slotTerms;
+    /** map of exact terms and aliases to explanations */
+    private final Map<String, String> exactMap;
+    /** map of normalized terms to explanations */
+    private final Map<String, String> normalMap;
+    /** map of phonetic keys to normalized terms; a NULL value indicates an ambiguous key */
+    private final Map<String, String> phoneticMap;
+    /** tree of normalized terms for fuzzy matching */
+    private final BkTree fuzzyTree;
+    /** number of exact matches */
+    private final AtomicLong exactCount;
+    /** number of normalized matches */
+    private final AtomicLong normalCount;
+    /** number of phonetic and fuzzy matches */
+    private final AtomicLong fuzzyCount;
+    /** number of failed lookups */
+    private final AtomicLong missCount;
+
+    /**
+     * Load a glossary from an input stream.
+     *
+     * @param inStream    stream containing the glossary file
+     *
+     * @throws IOException if there is an error reading the stream
+     */
+    public Glossary(InputStream inStream) throws IOException {
+        this.slotTerms = new ArrayList<String>();
+        this.exactMap = new HashMap<String, String>();
+        this.normalMap = new HashMap<String, String>();
+        this.phoneticMap = new HashMap<String, String>();
+        this.fuzzyTree = new BkTree();
+        this.exactCount = new AtomicLong();
+        this.normalCount = new AtomicLong();
+        this.fuzzyCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, StandardCharsets.UTF_8));
+        Set<String> ambiguous = new HashSet<String>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (! line.isEmpty() && line.charAt(0) != '#') {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    throw new IOException("Invalid glossary line: " + line);
+                }
+                String explanation = fields[2];
+                List<String> names = new ArrayList<String>();
+                for (String term : fields[0].split("\\|")) {
+                    this.slotTerms.add(term);
+                    names.add(term);
+                }
+                if (! fields[1].isEmpty()) {
+                    for (String alias : fields[1].split("\\|")) {
+                        names.add(alias);
+                    }
+                }
+                for (String name : names) {
+                    this.exactMap.put(name, explanation);
+                    String normal = normalize(name);
+                    if (this.normalMap.put(normal, explanation) == null) {
+                        this.fuzzyTree.add(normal);
+                    }
+                    String key = phonetic(normal);
+                    String old = this.phoneticMap.putIfAbsent(key, normal);
+                    if (old != null && ! explanation.equals(this.normalMap.get(old))) {
+                        ambiguous.add(key);
+                    }
+                }
+            }
+        }
+        for (String key : ambiguous) {
+            this.phoneticMap.put(key, null);
+        }
+    }
+
+    /**
+     * @return the shared glossary for this container, loading it if necessary
+     */
+    public static synchronized Glossary getInstance() {
+        if (instance == null) {
+            try (InputStream inStream = Glossary.class.getResourceAsStream(RESOURCE_NAME)) {
+                if (inStream == null) {
+                    throw new IOException("Glossary resource " + RESOURCE_NAME + " not found.");
+                }
+                instance = new Glossary(inStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return the explanation for a term, or NULL if the term is not in the glossary
+     *
+     * @param term    term to explain
+     */
+    public String explain(String term) {
+        String retVal = this.exactMap.get(term);
+        if (retVal != null) {
+            this.exactCount.incrementAndGet();
+        } else {
+            String normal = normalize(term);
+            retVal = this.normalMap.get(normal);
+            if (retVal != null) {
+                this.normalCount.incrementAndGet();
+            } else if (! normal.isEmpty()) {
+                int maxDistance = maxDistance(normal);
+                String sounds = this.phoneticMap.get(phonetic(normal));
+                if (sounds != null && BkTree.distance(normal, sounds) <= maxDistance) {
+                    retVal = this.normalMap.get(sounds);
+                } else {
+                    String closest = this.fuzzyTree.search(normal, maxDistance);
+                    if (closest != null) {
+                        retVal = this.normalMap.get(closest);
+                    }
+                }
+                if (retVal != null) {
+                    this.fuzzyCount.incrementAndGet();
+                }
+            }
+            if (retVal == null) {
+                this.missCount.incrementAndGet();
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the maximum edit distance for a fuzzy match on a normalized term
+     *
+     * @param normal    normalized term
+     */
+    private static int maxDistance(String normal) {
+        int len = normal.length();
+        return (len <= 4 ? 1 : (len <= 8 ? 2 : 3));
+    }
+
+    /**
+     * @return the normalized form of a term:  lower case, letters only, with a trailing plural "s" removed
+     *
+     * @param term    term to normalize
+     */
+    protected static String normalize(String term) {
+        StringBuilder retVal = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (Character.isLetter(c)) {
+                retVal.append(Character.toLowerCase(c));
+            }
+        }
+        int len = retVal.length();
+        if (len > 3 && retVal.charAt(len - 1) == 's' && retVal.charAt(len - 2) != 's') {
+            retVal.setLength(len - 1);
+        }
+        return retVal.toString();
+    }
+
+    /**
+     * @return a phonetic key for a normalized term.  Letters that sound alike are merged, vowels after
+     *         the first letter are dropped, and repeated letters are collapsed.
+     *
+     * @param normal    normalized term
+     */
+    protected static String phonetic(String normal) {
+        StringBuilder retVal = new StringBuilder(normal.length());
+        char last = 0;
+        for (int i = 0; i < normal.length(); i++) {
+            char c = normal.charAt(i);
+            char next = (i + 1 < normal.length() ? normal.charAt(i + 1) : 0);
+            switch (c) {
+            case 'c' :
+            case 'q' :
+                c = 'k';
+                break;
+            case 'z' :
+                c = 's';
+                break;
+            case 'y' :
+                c = 'i';
+                break;
+            case 'p' :
+                if (next == 'h') {
+                    c = 'f';
+                    i++;
+                }
+                break;
+            default :
+                break;
+            }
+            boolean vowel = (c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u');
+            if ((retVal.length() == 0 || ! vowel) && c != last) {
+                retVal.append(c);
+            }
+            last = c;
+        }
+        return retVal.toString();
+    }
+
+    /**
+     * @return the terms for the LIST_OF_TERMS slot type, in glossary order
+     */
+    public List<String> getSlotTerms() {
+        return this.slotTerms;
+    }
+
+    /**
+     * @return the distinct explanations in the glossary
+     */
+    public Set<String> getExplanations() {
+        return new HashSet<String>(this.exactMap.values());
+    }
+
+    /**
+     * @return a printable summary of the lookup statistics
+     */
+    public String getStats() {
+        return String.format("exact=%d, normalized=%d, fuzzy=%d, misses=%d", this.exactCount.get(),
+                this.normalCount.get(), this.fuzzyCount.get(), this.missCount.get());
+    }
+
+    /**
+     * Write the LIST_OF_TERMS slot type file from the glossary, so the two cannot drift apart.
+     *
+     * @param args    optional output file name (default "speechAssets/customSlotTypes/LIST_OF_TERMS")
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String fileName = (args.length > 0 ? args[0] : "speechAssets/customSlotTypes/LIST_OF_TERMS");
+        try (Writer writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            writer.write(String.join("\n", getInstance().getSlotTerms()));
+        }
+    }
+
+}
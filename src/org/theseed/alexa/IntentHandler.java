@@ -0,0 +1,24 @@
+package org.theseed.alexa;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+
+/**
+ * This interface represents the code that answers a single intent.  The speechlet keeps a table
+ * of these, keyed by intent name.
+ */
+public interface IntentHandler {
+
+    /**
+     * @return the response to an intent
+     *
+     * @param intent     intent to answer, including its slots
+     * @param session    current session
+     *
+     * @throws SpeechletException if the intent cannot be answered
+     */
+    public SpeechletResponse handle(Intent intent, Session session) throws SpeechletException;
+
+}
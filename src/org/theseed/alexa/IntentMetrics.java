@@ -0,0 +1,233 @@
+package org.theseed.alexa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+
+/**
+ * This class tracks the performance of a single intent handler.  It counts the calls and errors and
+ * keeps separate latency histograms for the time spent waiting on the SEED back end and the time
+ * spent locally (parsing slots, building the response, and so on).  Back-end time is reported by
+ * the code that calls the back end (see {@link #recordBackend(long, boolean)}) into a per-thread
+ * accumulator, and subtracted from the total time of the call.
+ *
+ * There is one instance per intent name for the whole container.  The metrics for all the intents
+ * are logged as structured "metric=intent" lines at a fixed interval (checked when a call finishes,
+ * so no timer thread is needed in a frozen Lambda container) and are available from
+ * {@link #getReport()}.  Other components can add their own metric lines to the same output (see
+ * {@link #addLineSource(Supplier)}).
+ *
+ * The following setting (see {@link SeedConfig}) controls the metrics.
+ *
+ *  metricInterval      seconds between metric log lines (default 60; 0 to turn them off)
+ */
+public class IntentMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(IntentMetrics.class);
+
+    /** map of intent names to metrics */
+    private static final Map<String, IntentMetrics> ALL = new ConcurrentHashMap<String, IntentMetrics>();
+    /** per-thread back-end accumulator:  nanoseconds spent, and number of failures */
+    private static final ThreadLocal<long[]> BACKEND = ThreadLocal.withInitial(() -> new long[2]);
+    /** suppliers of additional metric lines */
+    private static final List<Supplier<String>> SOURCES = new CopyOnWriteArrayList<Supplier<String>>();
+    /** milliseconds between metric log lines */
+    private static final long INTERVAL = SeedConfig.getLong("metricInterval", 60) * 1000;
+    /** time at which the next metric lines are due */
+    private static final AtomicLong nextEmit = new AtomicLong(System.currentTimeMillis() + INTERVAL);
+
+    /** name of the intent */
+    private final String name;
+    /** number of calls */
+    private final AtomicLong callCount;
+    /** number of calls that failed or could not reach the SEED */
+    private final AtomicLong errorCount;
+    /** histogram of local time in microseconds */
+    private final LatencyHistogram localTime;
+    /** histogram of back-end time in microseconds, for calls that used the back end */
+    private final LatencyHistogram backendTime;
+
+    /**
+     * Create the metrics for an intent.
+     *
+     * @param name    name of the intent
+     */
+    private IntentMetrics(String name) {
+        this.name = name;
+        this.callCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.localTime = new LatencyHistogram();
+        this.backendTime = new LatencyHistogram();
+    }
+
+    /**
+     * @return the metrics for an intent, creating them if necessary
+     *
+     * @param name    name of the intent
+     */
+    public static IntentMetrics get(String name) {
+        return ALL.computeIfAbsent(name, IntentMetrics::new);
+    }
+
+    /**
+     * Call an intent handler and record its performance.
+     *
+     * @param handler    handler to call
+     * @param intent     intent to answer
+     * @param session    current session
+     *
+     * @return the handler's response
+     *
+     * @throws SpeechletException if the handler fails
+     */
+    public SpeechletResponse invoke(IntentHandler handler, Intent intent, Session session) throws SpeechletException {
+        long[] backend = BACKEND.get();
+        backend[0] = 0;
+        backend[1] = 0;
+        SpeechletResponse retVal = null;
+        long start = System.nanoTime();
+        try {
+            retVal = handler.handle(intent, session);
+        } finally {
+            long total = System.nanoTime() - start;
+            this.callCount.incrementAndGet();
+            if (retVal == null || backend[1] > 0) {
+                this.errorCount.incrementAndGet();
+            }
+            this.localTime.record((total - backend[0]) / 1000);
+            if (backend[0] > 0) {
+                this.backendTime.record(backend[0] / 1000);
+            }
+            emitIfDue();
+        }
+        return retVal;
+    }
+
+    /**
+     * Record time spent waiting on the back end for the current intent call.
+     *
+     * @param nanos     nanoseconds spent
+     * @param failed    TRUE if the back end could not answer
+     */
+    public static void recordBackend(long nanos, boolean failed) {
+        long[] backend = BACKEND.get();
+        backend[0] += nanos;
+        if (failed) {
+            backend[1]++;
+        }
+    }
+
+    /**
+     * Clear the back-end time recorded for the current thread.
+     */
+    public static void resetBackend() {
+        long[] backend = BACKEND.get();
+        backend[0] = 0;
+        backend[1] = 0;
+    }
+
+    /**
+     * @return the nanoseconds of back-end time recorded for the current thread since the last intent
+     *         call started or the last reset
+     */
+    public static long getBackendNanos() {
+        return BACKEND.get()[0];
+    }
+
+    /**
+     * Add a supplier of a metric line to be logged and reported with the intent metrics.
+     *
+     * @param source    supplier of a structured metric line
+     */
+    public static void addLineSource(Supplier<String> source) {
+        SOURCES.add(source);
+    }
+
+    /**
+     * Log the metric lines if the interval has passed.
+     */
+    private static void emitIfDue() {
+        if (INTERVAL > 0) {
+            long now = System.currentTimeMillis();
+            long due = nextEmit.get();
+            if (now >= due && nextEmit.compareAndSet(due, now + INTERVAL)) {
+                for (String line : getLines()) {
+                    log.info(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a structured metric line for this intent
+     */
+    public String getLine() {
+        return String.format("metric=intent name=%s calls=%d errors=%d local_p50_us=%d local_p99_us=%d "
+                + "local_max_us=%d backend_calls=%d backend_p50_us=%d backend_p99_us=%d backend_max_us=%d",
+                this.name, this.callCount.get(), this.errorCount.get(), this.localTime.percentile(50),
+                this.localTime.percentile(99), this.localTime.getMax(), this.backendTime.getCount(),
+                this.backendTime.percentile(50), this.backendTime.percentile(99), this.backendTime.getMax());
+    }
+
+    /**
+     * @return the metric lines for all the intents, followed by the additional metric lines
+     */
+    public static List<String> getLines() {
+        List<String> retVal = new ArrayList<String>(ALL.size() + SOURCES.size());
+        for (IntentMetrics metrics : ALL.values()) {
+            retVal.add(metrics.getLine());
+        }
+        for (Supplier<String> source : SOURCES) {
+            retVal.add(source.get());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the metric lines for all the intents, separated by new-lines
+     */
+    public static String getReport() {
+        return String.join("\n", getLines());
+    }
+
+    /**
+     * @return the number of calls
+     */
+    public long getCallCount() {
+        return this.callCount.get();
+    }
+
+    /**
+     * @return the number of calls that failed or could not reach the SEED
+     */
+    public long getErrorCount() {
+        return this.errorCount.get();
+    }
+
+    /**
+     * @return the histogram of local time in microseconds
+     */
+    public LatencyHistogram getLocalTime() {
+        return this.localTime;
+    }
+
+    /**
+     * @return the histogram of back-end time in microseconds
+     */
+    public LatencyHistogram getBackendTime() {
+        return this.backendTime;
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.theseed.alexa;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a lock-free latency histogram in the style of HdrHistogram.  Values are recorded in
+ * microseconds.  Values below 32 have their own buckets; above that, each power of two is divided into
+ * 16 sub-buckets, so any reported value is within about 6% of the true value.  Recording a value is a
+ * few shifts and one atomic increment, and the histogram never allocates after construction.
+ */
+public class LatencyHistogram {
+
+    /** number of sub-buckets per power of two (as a bit count) */
+    private static final int SUB_BITS = 4;
+    /** values below this limit have their own buckets */
+    private static final int LINEAR_LIMIT = 2 << SUB_BITS;
+    /** exponent of the linear limit */
+    private static final int LINEAR_EXP = 1 + SUB_BITS;
+    /** highest exponent tracked; larger values go in the last bucket */
+    private static final int MAX_EXP = 40;
+
+    /** bucket counts */
+    private final AtomicLongArray counts;
+    /** total number of values recorded */
+    private final AtomicLong total;
+    /** largest value recorded */
+    private final AtomicLong max;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(LINEAR_LIMIT + (MAX_EXP - LINEAR_EXP + 1) * (1 << SUB_BITS));
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param micros    latency in microseconds
+     */
+    public void record(long micros) {
+        long value = Math.max(micros, 0);
+        this.counts.incrementAndGet(bucket(value));
+        this.total.incrementAndGet();
+        long old = this.max.get();
+        while (value > old && ! this.max.compareAndSet(old, value)) {
+            old = this.max.get();
+        }
+    }
+
+    /**
+     * @return the bucket index for a value
+     *
+     * @param value    value to classify
+     */
+    protected static int bucket(long value) {
+        int retVal;
+        if (value < LINEAR_LIMIT) {
+            retVal = (int) value;
+        } else {
+            int exp = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXP);
+            int sub = (int) (Math.min(value >>> (exp - SUB_BITS), (2 << SUB_BITS) - 1)) & ((1 << SUB_BITS) - 1);
+            retVal = LINEAR_LIMIT + ((exp - LINEAR_EXP) << SUB_BITS) + sub;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the largest value that falls in a bucket
+     *
+     * @param idx    bucket index
+     */
+    protected static long bucketValue(int idx) {
+        long retVal;
+        if (idx < LINEAR_LIMIT) {
+            retVal = idx;
+        } else {
+            int offset = idx - LINEAR_LIMIT;
+            int exp = (offset >>> SUB_BITS) + LINEAR_EXP;
+            int sub = offset & ((1 << SUB_BITS) - 1);
+            retVal = ((long) ((1 << SUB_BITS) + sub + 1) << (exp - SUB_BITS)) - 1;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the specified percentile of the recorded values, in microseconds, or 0 if nothing
+     *         has been recorded
+     *
+     * @param pct    percentile to compute (0 to 100)
+     */
+    public long percentile(double pct) {
+        long retVal = 0;
+        long count = this.total.get();
+        if (count > 0) {
+            long target = Math.max(1, (long) Math.ceil(pct / 100.0 * count));
+            long seen = 0;
+            int n = this.counts.length();
+            int idx = 0;
+            while (idx < n && seen < target) {
+                seen += this.counts.get(idx);
+                idx++;
+            }
+            // Never report more than the true maximum.
+            retVal = Math.min(bucketValue(idx - 1), this.max.get());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return this.total.get();
+    }
+
+    /**
+     * @return the largest value recorded, in microseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+}
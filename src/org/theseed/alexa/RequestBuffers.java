@@ -0,0 +1,226 @@
+package org.theseed.alexa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class holds the reusable byte buffers for converting a string request into a byte stream and
+ * a byte stream response back into a string.  Each thread has its own set (see {@link #get()}), so
+ * a warm container does not allocate new buffers for every request.  A buffer that grows beyond
+ * {@link #MAX_RETAINED} bytes is discarded after use (see {@link #release()}), so an unusually large
+ * request does not pin memory forever.
+ */
+class RequestBuffers {
+
+    /** maximum buffer size to keep from one request to the next */
+    protected static final int MAX_RETAINED = 64 * 1024;
+
+    /** initial buffer size */
+    private static final int INITIAL_SIZE = 4 * 1024;
+
+    /** buffers for each thread */
+    private static final ThreadLocal<RequestBuffers> BUFFERS = ThreadLocal.withInitial(RequestBuffers::new);
+
+    /** UTF-8 encoder for requests */
+    private final CharsetEncoder encoder;
+    /** encoded request bytes */
+    private byte[] input;
+    /** request stream */
+    private final Input inStream;
+    /** response stream */
+    private Output outStream;
+
+    /**
+     * This is a byte-array input stream that can be pointed at a new buffer.
+     */
+    private static class Input extends ByteArrayInputStream {
+
+        public Input() {
+            super(new byte[0]);
+        }
+
+        /**
+         * Point this stream at new data.
+         *
+         * @param data      data buffer
+         * @param length    number of valid bytes in the buffer
+         */
+        public void reset(byte[] data, int length) {
+            this.buf = data;
+            this.pos = 0;
+            this.mark = 0;
+            this.count = length;
+        }
+
+        /**
+         * @return the data buffer
+         */
+        public byte[] buffer() {
+            return this.buf;
+        }
+
+        /**
+         * @return the number of valid bytes in the buffer
+         */
+        public int length() {
+            return this.count;
+        }
+
+    }
+
+    /**
+     * This is a byte-array output stream whose buffer can be checked for size.
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        public Output() {
+            super(INITIAL_SIZE);
+        }
+
+        /**
+         * @return the buffer contents, decoded from UTF-8
+         */
+        public String decode() {
+            return new String(this.buf, 0, this.count, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the current buffer capacity
+         */
+        public int capacity() {
+            return this.buf.length;
+        }
+
+    }
+
+    /**
+     * Create a new set of buffers.
+     */
+    private RequestBuffers() {
+        this.encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.input = new byte[INITIAL_SIZE];
+        this.inStream = new Input();
+        this.outStream = new Output();
+    }
+
+    /**
+     * @return the buffers for the current thread
+     */
+    public static RequestBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * @return an input stream containing the UTF-8 encoding of a request string
+     *
+     * @param request    request string to encode
+     */
+    public InputStream encode(String request) {
+        // A UTF-8 character never needs more than three bytes per UTF-16 char.
+        int needed = request.length() * 3;
+        byte[] buffer = this.input;
+        if (needed > buffer.length) {
+            buffer = new byte[needed];
+            if (needed <= MAX_RETAINED) {
+                this.input = buffer;
+            }
+        }
+        ByteBuffer out = ByteBuffer.wrap(buffer);
+        this.encoder.reset();
+        this.encoder.encode(CharBuffer.wrap(request), out, true);
+        this.encoder.flush(out);
+        this.inStream.reset(buffer, out.position());
+        return this.inStream;
+    }
+
+    /**
+     * @return an input stream containing all the bytes of a request stream.  If the request stream
+     *         came from {@link #encode(String)}, it is returned unchanged; otherwise, it is read into
+     *         the request buffer.
+     *
+     * @param in    request stream to load
+     *
+     * @throws IOException if there is a read error
+     */
+    public InputStream load(InputStream in) throws IOException {
+        if (in != this.inStream) {
+            byte[] buffer = this.input;
+            int count = 0;
+            int n = in.read(buffer, 0, buffer.length);
+            while (n >= 0) {
+                count += n;
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    if (buffer.length <= MAX_RETAINED) {
+                        this.input = buffer;
+                    }
+                }
+                n = in.read(buffer, count, buffer.length - count);
+            }
+            this.inStream.reset(buffer, count);
+        }
+        return this.inStream;
+    }
+
+    /**
+     * @return the buffer holding the current request bytes
+     */
+    public byte[] requestBytes() {
+        return this.inStream.buffer();
+    }
+
+    /**
+     * @return the number of bytes in the current request
+     */
+    public int requestLength() {
+        return this.inStream.length();
+    }
+
+    /**
+     * @return an empty output stream for the response
+     */
+    public OutputStream output() {
+        this.outStream.reset();
+        return this.outStream;
+    }
+
+    /**
+     * @return the response written to the output stream, decoded from UTF-8
+     */
+    public String decode() {
+        String retVal = this.outStream.decode();
+        this.release();
+        return retVal;
+    }
+
+    /**
+     * Discard any buffer that grew beyond the retained size during the current request.  This is
+     * done by {@link #decode()}, but it must also be done when a request fails before its response
+     * is decoded.
+     */
+    public void release() {
+        if (this.outStream.capacity() > MAX_RETAINED) {
+            this.outStream = new Output();
+        }
+        // Release the request buffer if it was a temporary one.
+        this.inStream.reset(this.input, 0);
+    }
+
+    /**
+     * @return the total size of the buffers currently held, in bytes
+     */
+    protected int retainedBytes() {
+        return this.input.length + this.inStream.buffer().length + this.outStream.capacity();
+    }
+
+}
@@ -0,0 +1,293 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * This class pulls the fields of interest out of a request envelope with a streaming JSON parser,
+ * without building the full request object:  the application ID, the request type, the intent name,
+ * the slot values, and the position of the session attributes.  It is used wherever a request has to
+ * be examined outside the ASK pipeline (see {@link ResponseTemplates} and {@link TrafficCapture}).
+ */
+class RequestScanner {
+
+    /** factory for request parsers */
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /** application ID, or NULL if there is none */
+    private String applicationId;
+    /** request type, or NULL if there is none */
+    private String type;
+    /** intent name, or NULL if there is none */
+    private String intent;
+    /** map of slot names to values, in request order */
+    private Map<String, String> slots;
+    /** TRUE if the request has a session */
+    private boolean session;
+    /** offset of the session attributes, or -1 if there are none */
+    private int attrStart;
+    /** offset past the end of the session attributes */
+    private int attrEnd;
+
+    /**
+     * Scan a request envelope.
+     *
+     * @param request    buffer containing the request envelope
+     * @param length     number of bytes in the request
+     *
+     * @throws IOException if the request is not a valid JSON object
+     */
+    RequestScanner(byte[] request, int length) throws IOException {
+        this.slots = Collections.emptyMap();
+        this.attrStart = -1;
+        try (JsonParser parser = JSON.createParser(request, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Request is not a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                } else if ("session".equals(name)) {
+                    this.session = true;
+                    this.scanSession(parser, request, length);
+                } else if ("request".equals(name)) {
+                    this.scanRequest(parser);
+                } else if ("context".equals(name) && this.applicationId == null) {
+                    // Newer requests also carry the application ID in context.System.application.
+                    this.applicationId = findPath(parser, "System", "application", "applicationId");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Scan the session object of a request.  On entry, the parser is positioned on the start of the
+     * object; on exit, it is positioned on the end.
+     *
+     * @param parser     parser for the request
+     * @param request    buffer containing the request envelope
+     * @param length     number of bytes in the request
+     *
+     * @throws IOException if the request is not valid JSON
+     */
+    private void scanSession(JsonParser parser, byte[] request, int length) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("attributes".equals(name) && token == JsonToken.START_OBJECT) {
+                // Older parsers report the location of the field name for an object value, so the
+                // braces are found in the request itself.
+                int start = (int) parser.getTokenLocation().getByteOffset();
+                while (start < length && request[start] != '{') {
+                    start++;
+                }
+                parser.skipChildren();
+                this.attrEnd = findClose(request, start, length);
+                this.attrStart = (this.attrEnd < 0 ? -1 : start);
+            } else if ("application".equals(name) && token == JsonToken.START_OBJECT) {
+                this.applicationId = findPath(parser, "applicationId");
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Scan the request object of a request.  On entry, the parser is positioned on the start of the
+     * object; on exit, it is positioned on the end.
+     *
+     * @param parser    parser for the request
+     *
+     * @throws IOException if the request is not valid JSON
+     */
+    private void scanRequest(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("type".equals(name) && token == JsonToken.VALUE_STRING) {
+                this.type = parser.getText();
+            } else if ("intent".equals(name) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if ("name".equals(key) && token == JsonToken.VALUE_STRING) {
+                        this.intent = parser.getText();
+                    } else if ("slots".equals(key) && token == JsonToken.START_OBJECT) {
+                        this.scanSlots(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Scan the slots object of an intent.  On entry, the parser is positioned on the start of the
+     * object; on exit, it is positioned on the end.  A slot with no value is recorded with a NULL
+     * value.
+     *
+     * @param parser    parser for the request
+     *
+     * @throws IOException if the request is not valid JSON
+     */
+    private void scanSlots(JsonParser parser) throws IOException {
+        this.slots = new LinkedHashMap<String, String>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String slot = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                this.slots.put(slot, findPath(parser, "value"));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @return the offset past the brace that closes an object, or -1 if the object is not closed
+     *
+     * @param request    buffer containing the request envelope
+     * @param start      offset of the brace that opens the object
+     * @param length     number of bytes in the request
+     */
+    private static int findClose(byte[] request, int start, int length) {
+        int retVal = -1;
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = start; i < length && retVal < 0; i++) {
+            byte c = request[i];
+            if (quoted) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    retVal = i + 1;
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Find a string value along a path of field names.  On entry, the parser is positioned on the
+     * start of an object; on exit, it is positioned on the end of the same object.
+     *
+     * @param parser    parser for the request
+     * @param path      field names leading to the value
+     *
+     * @return the string value found, or NULL if there is none
+     *
+     * @throws IOException if the request is not valid JSON
+     */
+    private static String findPath(JsonParser parser, String... path) throws IOException {
+        return findPath(parser, path, 0);
+    }
+
+    /**
+     * Find a string value along the remainder of a path of field names.
+     *
+     * @param parser    parser for the request, positioned on the start of an object
+     * @param path      field names leading to the value
+     * @param level     index in the path of the field name to look for in this object
+     *
+     * @return the string value found, or NULL if there is none
+     *
+     * @throws IOException if the request is not valid JSON
+     */
+    private static String findPath(JsonParser parser, String[] path, int level) throws IOException {
+        String retVal = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (retVal == null && name.equals(path[level]) && level == path.length - 1
+                    && token == JsonToken.VALUE_STRING) {
+                retVal = parser.getText();
+            } else if (retVal == null && name.equals(path[level]) && level < path.length - 1
+                    && token == JsonToken.START_OBJECT) {
+                retVal = findPath(parser, path, level + 1);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the application ID, or NULL if there is none
+     */
+    String getApplicationId() {
+        return this.applicationId;
+    }
+
+    /**
+     * @return the request type, or NULL if there is none
+     */
+    String getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the intent name, or NULL if there is none
+     */
+    String getIntent() {
+        return this.intent;
+    }
+
+    /**
+     * @return the value of a slot, or NULL if the slot is not present or has no value
+     *
+     * @param name    name of the slot
+     */
+    String getSlot(String name) {
+        return this.slots.get(name);
+    }
+
+    /**
+     * @return a map of slot names to values (NULL for a slot with no value), in request order
+     */
+    Map<String, String> getSlots() {
+        return this.slots;
+    }
+
+    /**
+     * @return TRUE if the request has a session
+     */
+    boolean hasSession() {
+        return this.session;
+    }
+
+    /**
+     * @return the offset of the session attributes, or -1 if there are none
+     */
+    int getAttrStart() {
+        return this.attrStart;
+    }
+
+    /**
+     * @return the offset past the end of the session attributes
+     */
+    int getAttrEnd() {
+        return this.attrEnd;
+    }
+
+}
@@ -0,0 +1,207 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SpeechletResponse;
+
+/**
+ * This class holds pre-serialized responses for the requests whose answers never change:  the launch
+ * request, help, cancel, stop, and the glossary explanations.  The responses are built and serialized
+ * by the ASK library once, at startup, and stored as bytes.  A request is scanned with a streaming
+ * JSON parser (see {@link RequestScanner}) that pulls out only the application ID, the request type,
+ * the intent name, the slots and the position of the session attributes.  If it has a static answer, the stored bytes are
+ * written with the session attributes copied straight from the request, which is the only
+ * per-request field in the response envelope.  Anything else is left to the full ASK pipeline.
+ *
+ * Requests answered from a template skip the speechlet, so they do not appear in the intent metrics
+ * (see {@link IntentMetrics}); they are counted here instead.
+ */
+public class ResponseTemplates {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseTemplates.class);
+
+    /** name of the placeholder session attribute used to find the splice point in a template */
+    private static final String PLACEHOLDER = "seedTemplateAttributes";
+    /** session attributes to use if the request has none */
+    private static final byte[] EMPTY_ATTRIBUTES = "{}".getBytes(StandardCharsets.UTF_8);
+
+    /** speechlet that chooses the template for a request */
+    private final SeedQuerySpeechlet speechlet;
+    /** supported application IDs */
+    private final Set<String> applicationIds;
+    /** map of template keys to templates */
+    private final Map<String, Template> templates;
+    /** number of requests answered from a template */
+    private final AtomicLong hitCount;
+    /** number of requests passed to the full pipeline */
+    private final AtomicLong passCount;
+
+    /**
+     * This class is a serialized response split at the point where the session attributes go.
+     */
+    private static class Template {
+        /** bytes before the session attributes */
+        private final byte[] prefix;
+        /** bytes after the session attributes */
+        private final byte[] suffix;
+
+        /**
+         * Create a template.
+         *
+         * @param prefix    bytes before the session attributes
+         * @param suffix    bytes after the session attributes
+         */
+        private Template(byte[] prefix, byte[] suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    /**
+     * Build the templates for a speechlet's static responses.
+     *
+     * @param speechlet         speechlet whose static responses are to be stored
+     * @param applicationIds    supported application IDs
+     */
+    public ResponseTemplates(SeedQuerySpeechlet speechlet, Set<String> applicationIds) {
+        this.speechlet = speechlet;
+        this.applicationIds = applicationIds;
+        this.templates = new HashMap<String, Template>();
+        this.hitCount = new AtomicLong();
+        this.passCount = new AtomicLong();
+        for (Map.Entry<String, SpeechletResponse> entry : speechlet.getStaticResponses().entrySet()) {
+            Template template = null;
+            try {
+                template = build(entry.getValue());
+            } catch (IOException e) {
+                log.warn("Could not serialize static response {}: {}", entry.getKey(), e.getMessage());
+            }
+            if (template != null) {
+                this.templates.put(entry.getKey(), template);
+            }
+        }
+        log.debug("{} static response templates built.", this.templates.size());
+    }
+
+    /**
+     * @return a template for a response, or NULL if the splice point cannot be found
+     *
+     * @param response    response to serialize
+     *
+     * @throws IOException if the response cannot be serialized
+     */
+    private static Template build(SpeechletResponse response) throws IOException {
+        SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+        envelope.setVersion("1.0");
+        envelope.setResponse(response);
+        envelope.setSessionAttributes(Collections.<String, Object>singletonMap(PLACEHOLDER, ""));
+        byte[] json = envelope.toJsonBytes();
+        byte[] marker = ("{\"" + PLACEHOLDER + "\":\"\"}").getBytes(StandardCharsets.UTF_8);
+        Template retVal = null;
+        int pos = indexOf(json, marker);
+        if (pos >= 0) {
+            byte[] prefix = new byte[pos];
+            System.arraycopy(json, 0, prefix, 0, pos);
+            int after = pos + marker.length;
+            byte[] suffix = new byte[json.length - after];
+            System.arraycopy(json, after, suffix, 0, suffix.length);
+            retVal = new Template(prefix, suffix);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the position of a byte sequence in an array, or -1 if it is not found
+     *
+     * @param data      array to search
+     * @param target    sequence to find
+     */
+    private static int indexOf(byte[] data, byte[] target) {
+        int retVal = -1;
+        if (data != null) {
+            int last = data.length - target.length;
+            for (int i = 0; retVal < 0 && i <= last; i++) {
+                int j = 0;
+                while (j < target.length && data[i + j] == target[j]) {
+                    j++;
+                }
+                if (j == target.length) {
+                    retVal = i;
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Answer a request from a template if it has a static response.
+     *
+     * @param request    buffer containing the request JSON
+     * @param length     number of bytes in the request
+     * @param out        output stream for the response
+     *
+     * @return TRUE if the request was answered, FALSE if it needs the full pipeline
+     *
+     * @throws IOException if the response cannot be written
+     */
+    public boolean respond(byte[] request, int length, OutputStream out) throws IOException {
+        boolean retVal = false;
+        if (! this.templates.isEmpty()) {
+            RequestScanner fields = null;
+            try {
+                fields = new RequestScanner(request, length);
+            } catch (IOException e) {
+                // Leave the error reporting to the full pipeline.
+                fields = null;
+            }
+            if (fields != null && fields.hasSession() && fields.getApplicationId() != null
+                    && this.applicationIds.contains(fields.getApplicationId())) {
+                String key = this.speechlet.getStaticKey(fields.getType(), fields.getIntent(), fields.getSlot("Term"));
+                Template template = (key == null ? null : this.templates.get(key));
+                if (template != null) {
+                    out.write(template.prefix);
+                    if (fields.getAttrStart() < 0) {
+                        out.write(EMPTY_ATTRIBUTES);
+                    } else {
+                        out.write(request, fields.getAttrStart(), fields.getAttrEnd() - fields.getAttrStart());
+                    }
+                    out.write(template.suffix);
+                    retVal = true;
+                }
+            }
+        }
+        if (retVal) {
+            this.hitCount.incrementAndGet();
+        } else {
+            this.passCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of requests answered from a template
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return a printable summary of the template statistics
+     */
+    public String getStats() {
+        return String.format("templates=%d, hits=%d, passed=%d", this.templates.size(), this.hitCount.get(),
+                this.passCount.get());
+    }
+
+}
@@ -0,0 +1,499 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is the front end for all requests to the SEED.  It assembles the layers that sit between
+ * the speechlet and the SEED server:  an offline snapshot of common answers, then an in-memory answer
+ * cache, then a coalescer that merges identical concurrent queries, then an optional cache tier shared
+ * with the other skill instances (see {@link SeedSharedTier}), then an admission controller that
+ * limits the number of queries in progress (see {@link SeedLimiter}), then a circuit breaker that fails
+ * fast while the SEED is unhealthy, then a hedging layer that enforces the request deadline and sends a
+ * second query when the first is slow, and finally the pooled HTTP client.
+ * A single instance is shared by everything in the container (see {@link #getInstance()}), so that
+ * the cache survives from one Lambda invocation to the next.  Queries for several parameters at once
+ * (see {@link #getBatch(String, Collection)}) are sent to the SEED as a single request.  Batch
+ * failures count against the main circuit breaker, and a second circuit breaker, with the same
+ * settings, stops sending batches for a while if the SEED keeps failing them.
+ *
+ * Genome IDs can be checked before any query is made (see {@link #isKnownGenome(String)}).  An ID
+ * that is not well-formed, that is not in the genome Bloom filter (see {@link GenomeFilter}), or that
+ * the SEED recently said it does not know (see {@link GenomeMissCache}) is rejected at once.  The
+ * SEED does not know a genome if a genome action gets a 404 status or a genome summary is empty.  An
+ * empty answer to another genome action (such as a genome with no subsystems) says nothing about
+ * whether the genome exists.
+ *
+ * Every answered query that reaches the cache is counted, and the most popular answers are kept warm
+ * by a {@link CacheWarmer}, which loads them at startup and refreshes them before they go stale.
+ *
+ * The following settings (see {@link SeedConfig}) control the snapshot, the caches, the admission
+ * controller, the circuit breaker, the hedging layer, and the cache warmer.
+ *
+ *  snapshotFile        name of the snapshot file (default "seed.snapshot" in the Lambda task directory)
+ *  snapshotMaxAge      milliseconds after which the snapshot is considered stale (default 7 days)
+ *  cacheSize           maximum number of answers to cache (default 1000)
+ *  cacheTtl            default time-to-live for answers in milliseconds (default 1 hour)
+ *  cacheStaleWindow    milliseconds a stale answer can be used while it is refreshed (default 1 day)
+ *  ttlCountIntent      time-to-live for table counts (default 6 hours)
+ *  ttlGenomeIntent     time-to-live for genome summaries (default 1 day)
+ *  warmFile            name of the hot-key list file (default "seed.hot" in the Lambda task directory);
+ *                      outside Lambda the list is only saved if this is specified
+ *  warmSize            number of hot keys to track (default 200)
+ *  warmSketchWidth     number of counters in each row of the access sketch (default 4096)
+ *  warmThreads         number of answers to load at once while warming (default 8)
+ *  warmInterval        milliseconds between background refreshes of the hot answers (default 10 minutes)
+ *  warmAhead           hot answers that go stale within this many milliseconds are refreshed
+ *                      (default twice the interval)
+ *  sharedCache         location of the shared cache:  a directory name, optionally prefixed by "file:"
+ *                      (default none)
+ *  sharedTimeout       maximum milliseconds to wait for the shared cache (default 5)
+ *  sharedThreads       number of threads for shared cache file operations (default 4)
+ *  sharedQueue         maximum number of shared cache file operations waiting for a thread (default 64)
+ *  sharedVersion       version of the shared cache entries; change it to ignore all the old ones
+ *                      (default 1)
+ *  limitInitial        starting concurrency limit (default 8)
+ *  limitMin            minimum concurrency limit (default 2)
+ *  limitMax            maximum concurrency limit (default 64)
+ *  limitTarget         target query latency in milliseconds for the adaptive limit (default 1000)
+ *  limitBackoff        factor applied to the limit after a slow or failed query (default 0.9)
+ *  limitQueue          maximum number of queries waiting for admission (default 16)
+ *  limitWait           maximum milliseconds a query waits for admission (default 250)
+ *  breakerThreshold    consecutive failures that open the circuit (default 5)
+ *  breakerOpenTime     milliseconds the circuit stays open before a trial query (default 30000)
+ *  hedgePercentile     latency percentile after which a hedge is sent (default 95)
+ *  hedgeMinDelay       minimum milliseconds before a hedge is sent (default 100)
+ *  hedgeDefaultDelay   hedge delay before enough latencies have been observed (default 1000)
+ *  hedgeThreads        maximum number of SEED queries and hedges running at once (default 128)
+ *  genomeFilter        name of the genome filter file (default "genomes.bloom" in the Lambda task directory)
+ *  missCacheSize       maximum number of unknown genome IDs to remember (default 1000)
+ *  missCacheTtl        milliseconds to remember an unknown genome ID (default 1 hour)
+ */
+public class SeedBackend implements SeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedBackend.class);
+
+    /** one hour in milliseconds */
+    private static final long HOUR = 3600 * 1000L;
+
+    /** action whose empty answer means the SEED does not know the genome */
+    private static final String SUMMARY_ACTION = "GenomeIntent";
+
+    /** shared instance for this container */
+    private static SeedBackend instance;
+
+    /** HTTP client for the SEED server */
+    private final SeedClient client;
+    /** hedging layer */
+    private final SeedHedger hedger;
+    /** circuit breaker */
+    private final SeedCircuitBreaker breaker;
+    /** circuit breaker for batch queries only */
+    private final SeedCircuitBreaker batchBreaker;
+    /** admission controller */
+    private final SeedLimiter limiter;
+    /** shared cache tier, or NULL if there is none */
+    private final SeedSharedTier sharedTier;
+    /** concurrent query coalescer */
+    private final SeedCoalescer coalescer;
+    /** answer cache */
+    private final SeedCache cache;
+    /** warmer for the most popular answers */
+    private final CacheWarmer warmer;
+    /** offline snapshot, or NULL if there is none */
+    private final SeedSnapshot snapshot;
+    /** maximum age of a usable snapshot, in milliseconds */
+    private final long snapshotMaxAge;
+    /** Bloom filter of known genome IDs, or NULL if there is none */
+    private final GenomeFilter genomeFilter;
+    /** cache of genome IDs the SEED does not know */
+    private final GenomeMissCache missCache;
+    /** number of batch requests sent */
+    private final AtomicLong batchCount;
+
+    /**
+     * Construct a SEED back end.
+     *
+     * @param client    HTTP client for the SEED server
+     */
+    public SeedBackend(SeedClient client) {
+        this.client = client;
+        this.hedger = new SeedHedger(client, SeedConfig.getInt("hedgePercentile", 95),
+                SeedConfig.getLong("hedgeMinDelay", 100), SeedConfig.getLong("hedgeDefaultDelay", 1000),
+                SeedConfig.getInt("hedgeThreads", 128));
+        this.breaker = new SeedCircuitBreaker(this.hedger, SeedConfig.getInt("breakerThreshold", 5),
+                SeedConfig.getLong("breakerOpenTime", 30000));
+        this.batchBreaker = new SeedCircuitBreaker(client, SeedConfig.getInt("breakerThreshold", 5),
+                SeedConfig.getLong("breakerOpenTime", 30000));
+        this.limiter = new SeedLimiter(this.breaker, SeedConfig.getInt("limitInitial", 8),
+                SeedConfig.getInt("limitMin", 2), SeedConfig.getInt("limitMax", 64),
+                SeedConfig.getLong("limitTarget", 1000), SeedConfig.getDouble("limitBackoff", 0.9),
+                SeedConfig.getInt("limitQueue", 16), SeedConfig.getLong("limitWait", 250));
+        this.hedger.setLimiter(this.limiter);
+        SharedCache shared = openSharedCache();
+        if (shared == null) {
+            this.sharedTier = null;
+            this.coalescer = new SeedCoalescer(this.limiter);
+        } else {
+            this.sharedTier = new SeedSharedTier(this.limiter, shared, SeedConfig.getLong("sharedTimeout", 5),
+                    SeedConfig.getInt("sharedVersion", 1), this::getTtl);
+            this.coalescer = new SeedCoalescer(this.sharedTier);
+        }
+        this.cache = new SeedCache(this.coalescer, SeedConfig.getInt("cacheSize", 1000),
+                SeedConfig.getLong("cacheTtl", HOUR), SeedConfig.getLong("cacheStaleWindow", 24 * HOUR));
+        this.cache.setTtl("CountIntent", SeedConfig.getLong("ttlCountIntent", 6 * HOUR));
+        this.cache.setTtl("GenomeIntent", SeedConfig.getLong("ttlGenomeIntent", 24 * HOUR));
+        if (this.sharedTier != null) {
+            this.cache.setExpiryLimit(this.sharedTier::getExpiryLimit);
+        }
+        long warmInterval = SeedConfig.getLong("warmInterval", 600000);
+        // Outside Lambda, the hot-key list is only saved if its location is specified.
+        boolean warmSave = (System.getenv("LAMBDA_TASK_ROOT") != null || ! SeedConfig.getString("warmFile", "").isEmpty());
+        this.warmer = new CacheWarmer(this.cache, new AccessSketch(SeedConfig.getInt("warmSketchWidth", 4096),
+                SeedConfig.getInt("warmSize", 200)), taskFile("warmFile", "seed.hot"), warmSave,
+                SeedConfig.getInt("warmThreads", 8), warmInterval, SeedConfig.getLong("warmAhead", 2 * warmInterval));
+        this.snapshot = openSnapshot();
+        this.snapshotMaxAge = SeedConfig.getLong("snapshotMaxAge", 7 * 24 * HOUR);
+        this.genomeFilter = GenomeFilter.load(taskFile("genomeFilter", "genomes.bloom"));
+        this.missCache = new GenomeMissCache(SeedConfig.getInt("missCacheSize", 1000),
+                SeedConfig.getLong("missCacheTtl", HOUR));
+        this.batchCount = new AtomicLong();
+    }
+
+    /**
+     * @return the time-to-live in milliseconds for the answers to an action, which is the same in the
+     *         shared cache as in the in-process cache
+     *
+     * @param action    name of the action
+     */
+    private long getTtl(String action) {
+        return this.cache.getTtl(action);
+    }
+
+    /**
+     * @return the shared cache named by the "sharedCache" setting, or NULL if there is none.  A
+     *         location with no scheme is a directory.  New kinds of store (such as a network key-value
+     *         store) are added here by scheme.
+     */
+    private static SharedCache openSharedCache() {
+        SharedCache retVal = null;
+        String location = SeedConfig.getString("sharedCache", "");
+        int colon = location.indexOf(':');
+        String scheme = (colon < 2 ? "file" : location.substring(0, colon));
+        String name = (colon < 2 ? location : location.substring(colon + 1));
+        if (! location.isEmpty()) {
+            switch (scheme) {
+            case "file" :
+                try {
+                    retVal = new FileSharedCache(new File(name), SeedConfig.getInt("sharedThreads", 4),
+                            SeedConfig.getInt("sharedQueue", 64));
+                    log.info("Shared cache opened in {}.", name);
+                } catch (IOException e) {
+                    log.error("Could not open shared cache {}: {}", name, e.getMessage());
+                }
+                break;
+            default :
+                log.error("Unsupported shared cache type {}.", scheme);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a file named by a setting, defaulting to a file in the Lambda task directory
+     *
+     * @param setting        name of the setting
+     * @param defaultName    default file name
+     */
+    private static File taskFile(String setting, String defaultName) {
+        String taskRoot = System.getenv("LAMBDA_TASK_ROOT");
+        return new File(SeedConfig.getString(setting, taskRoot == null ? defaultName : taskRoot + "/" + defaultName));
+    }
+
+    /**
+     * @return the offline snapshot, or NULL if there is none
+     */
+    private static SeedSnapshot openSnapshot() {
+        SeedSnapshot retVal = null;
+        File snapFile = taskFile("snapshotFile", "seed.snapshot");
+        if (! snapFile.exists()) {
+            log.info("No SEED snapshot found at {}.", snapFile);
+        } else {
+            try {
+                retVal = new SeedSnapshot(snapFile);
+                log.info("SEED snapshot mapped from {}.", snapFile);
+            } catch (IOException e) {
+                log.error("Could not open SEED snapshot {}: {}", snapFile, e.getMessage());
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the shared back end for this container, creating it if necessary
+     */
+    public static synchronized SeedBackend getInstance() {
+        if (instance == null) {
+            instance = new SeedBackend(SeedClient.getInstance());
+            IntentMetrics.addLineSource(instance.limiter::getMetricLine);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the shared back end for this container, or NULL if it has not been created
+     */
+    public static synchronized SeedBackend getExistingInstance() {
+        return instance;
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        String retVal = null;
+        if (this.snapshot != null && ! this.snapshot.isStale(this.snapshotMaxAge)) {
+            retVal = this.snapshot.find(action, parameter);
+        }
+        if (retVal == null) {
+            try {
+                retVal = this.cache.getData(action, parameter);
+            } catch (HttpResponseException e) {
+                if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                    this.recordMiss(action, parameter);
+                }
+                throw e;
+            }
+            if (! SeedResponse.NO_INFO.equals(retVal)) {
+                this.warmer.record(action, parameter);
+            } else if (SUMMARY_ACTION.equals(action)) {
+                this.recordMiss(action, parameter);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Record that the SEED does not know the genome in a query, if the query is about a genome.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    private void recordMiss(String action, String parameter) {
+        if (action.startsWith("Genome") && GenomeFilter.isValidId(parameter)) {
+            this.missCache.record(parameter);
+            if (this.genomeFilter != null) {
+                this.genomeFilter.recordFalsePositive();
+            }
+        }
+    }
+
+    /**
+     * Check a genome ID without querying the SEED.
+     *
+     * @param genomeId    ID of the genome to check
+     *
+     * @return FALSE if the ID is malformed, not in the genome filter, or recently unknown to the SEED;
+     *         otherwise TRUE
+     */
+    @Override
+    public boolean isKnownGenome(String genomeId) {
+        return (GenomeFilter.isValidId(genomeId) && ! this.missCache.contains(genomeId)
+                && (this.genomeFilter == null || this.genomeFilter.mightContain(genomeId)));
+    }
+
+    /**
+     * Answer several queries with the same action.  Answers in the snapshot or the cache are used
+     * first.  The rest are sent to the SEED in a single request, with the parameters separated by
+     * commas and the answer in the fields format (see {@link SeedResponse}), one field per parameter.
+     * The answers are stored in the cache.  Any parameter the batch request does not answer (for
+     * example, because the server does not support batches) is queried on its own.
+     *
+     * @param action        name of the action to perform
+     * @param parameters    parameters for the queries
+     *
+     * @return a map of parameters to answers, in parameter order
+     *
+     * @throws IOException if the SEED could not be reached
+     */
+    @Override
+    public Map<String, String> getBatch(String action, Collection<String> parameters) throws IOException {
+        Map<String, String> found = new HashMap<String, String>();
+        List<String> missing = new ArrayList<String>(parameters.size());
+        for (String parameter : parameters) {
+            String answer = null;
+            if (this.snapshot != null && ! this.snapshot.isStale(this.snapshotMaxAge)) {
+                answer = this.snapshot.find(action, parameter);
+            }
+            if (answer == null) {
+                answer = this.cache.peek(action, parameter);
+                if (answer != null) {
+                    this.warmer.record(action, parameter);
+                }
+            }
+            if (answer != null) {
+                found.put(parameter, answer);
+            } else if (! missing.contains(parameter)) {
+                missing.add(parameter);
+            }
+        }
+        if (missing.size() > 1 && this.breaker.getState() == SeedCircuitBreaker.State.CLOSED) {
+            try {
+                final String joined = String.join(",", missing);
+                Map<String, String> fields = this.limiter.call(() -> this.batchBreaker.call(() ->
+                        this.breaker.call(() -> this.client.getFields(action, joined, missing))));
+                this.batchCount.incrementAndGet();
+                for (String parameter : missing) {
+                    String answer = fields.get(parameter);
+                    if (answer != null) {
+                        if (! SeedResponse.NO_INFO.equals(answer)) {
+                            this.warmer.record(action, parameter);
+                        } else if (SUMMARY_ACTION.equals(action)) {
+                            this.recordMiss(action, parameter);
+                        }
+                        if (this.sharedTier != null) {
+                            this.sharedTier.put(action, parameter, answer);
+                        }
+                        this.cache.put(action, parameter, answer);
+                        found.put(parameter, answer);
+                    }
+                }
+            } catch (SeedUnavailableException e) {
+                if (! SeedUnavailableException.UNAVAILABLE.equals(e.getMessage())) {
+                    // We are out of time or the SEED is busy, so there is no point in asking for the
+                    // answers one at a time.
+                    throw e;
+                }
+                log.debug("Batch {} query refused by a circuit breaker.", action);
+            } catch (IOException e) {
+                log.debug("Batch {} query failed: {}", action, e.getMessage());
+            }
+        }
+        Map<String, String> retVal = new LinkedHashMap<String, String>();
+        for (String parameter : parameters) {
+            String answer = found.get(parameter);
+            if (answer == null) {
+                answer = this.getData(action, parameter);
+                found.put(parameter, answer);
+            }
+            retVal.put(parameter, answer);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of batch requests sent to the SEED
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     * @return the HTTP client for the SEED server
+     */
+    public SeedClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * @return the hedging layer
+     */
+    public SeedHedger getHedger() {
+        return this.hedger;
+    }
+
+    /**
+     * @return the circuit breaker
+     */
+    public SeedCircuitBreaker getBreaker() {
+        return this.breaker;
+    }
+
+    /**
+     * @return the circuit breaker for batch queries
+     */
+    public SeedCircuitBreaker getBatchBreaker() {
+        return this.batchBreaker;
+    }
+
+    /**
+     * @return the admission controller
+     */
+    public SeedLimiter getLimiter() {
+        return this.limiter;
+    }
+
+    /**
+     * @return the shared cache tier, or NULL if there is none
+     */
+    public SeedSharedTier getSharedTier() {
+        return this.sharedTier;
+    }
+
+    /**
+     * @return the concurrent query coalescer
+     */
+    public SeedCoalescer getCoalescer() {
+        return this.coalescer;
+    }
+
+    /**
+     * @return the answer cache
+     */
+    public SeedCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * @return the warmer for the most popular answers
+     */
+    public CacheWarmer getWarmer() {
+        return this.warmer;
+    }
+
+    /**
+     * @return the genome Bloom filter, or NULL if there is none
+     */
+    public GenomeFilter getGenomeFilter() {
+        return this.genomeFilter;
+    }
+
+    /**
+     * @return the cache of genome IDs the SEED does not know
+     */
+    public GenomeMissCache getMissCache() {
+        return this.missCache;
+    }
+
+    /**
+     * @return the offline snapshot, or NULL if there is none
+     */
+    public SeedSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return a printable summary of the back end statistics
+     */
+    public String getStats() {
+        String snapStats = (this.snapshot == null ? "none" : this.snapshot.getStats());
+        return "snapshot: " + snapStats + "; cache: " + this.cache.getStats() + "; coalescer: " + this.coalescer.getStats()
+                + "; shared: " + (this.sharedTier == null ? "none" : this.sharedTier.getStats())
+                + "; limiter: " + this.limiter.getStats() + "; breaker: " + this.breaker.getStats()
+                + "; batch breaker: " + this.batchBreaker.getStats() + "; hedger: " + this.hedger.getStats()
+                + "; client: " + this.client.getStats() + "; batches=" + this.getBatchCount()
+                + "; genome filter: " + (this.genomeFilter == null ? "none" : this.genomeFilter.getStats())
+                + "; misses: " + this.missCache.getStats() + "; warmer: " + this.warmer.getStats();
+    }
+
+}
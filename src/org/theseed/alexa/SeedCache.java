@@ -0,0 +1,386 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is an in-memory cache of SEED answers.  It sits in front of another {@link SeedSource}
+ * and remembers the answer for each action/parameter pair.  The cache has a fixed maximum size, and
+ * when it fills up the least-recently-used answer is discarded.
+ *
+ * Each action has its own time-to-live.  Once an answer is older than its time-to-live it is stale.
+ * A stale answer is still returned for a limited time, but a background refresh is queued so that
+ * the next request gets a fresh one.  Only when an answer is older than the time-to-live plus the
+ * stale window does a request have to wait for the SEED.  If the underlying source has its own
+ * expiration times (see {@link #setExpiryLimit(ToLongFunction)}), an answer never stays fresh longer
+ * than the source allows.
+ */
+public class SeedCache implements SeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedCache.class);
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** maximum number of answers to keep */
+    private final int maxSize;
+    /** default time-to-live in milliseconds */
+    private final long defaultTtl;
+    /** number of milliseconds after expiration during which a stale answer can be used */
+    private final long staleWindow;
+    /** map of action names to time-to-live values */
+    private final Map<String, Long> ttlMap;
+    /** map of keys to cache entries, in access order; all access must be synchronized on it */
+    private final LinkedHashMap<String, Answer> cache;
+    /** executor for background refreshes */
+    private final ExecutorService refresher;
+    /** number of fresh hits */
+    private final AtomicLong hitCount;
+    /** number of stale hits */
+    private final AtomicLong staleCount;
+    /** number of misses */
+    private final AtomicLong missCount;
+    /** number of evictions */
+    private final AtomicLong evictCount;
+    /** number of background refreshes */
+    private final AtomicLong refreshCount;
+    /** number of loads from the underlying source */
+    private final AtomicLong loadCount;
+    /** total nanoseconds spent loading from the underlying source */
+    private final AtomicLong loadNanos;
+    /** function returning the latest time at which a newly stored answer for a key may go stale */
+    private volatile ToLongFunction<String> expiryLimit;
+
+    /**
+     * This class represents a cached answer.
+     */
+    protected static class Answer {
+        /** answer text */
+        protected final String value;
+        /** time at which the answer goes stale */
+        protected final long expires;
+        /** time after which the answer cannot be used */
+        protected final long staleLimit;
+        /** TRUE if a refresh has been queued */
+        protected final AtomicBoolean refreshing;
+
+        /**
+         * Create a cached answer.
+         *
+         * @param value         answer text
+         * @param expires       time at which the answer goes stale
+         * @param staleLimit    time after which the answer cannot be used
+         */
+        protected Answer(String value, long expires, long staleLimit) {
+            this.value = value;
+            this.expires = expires;
+            this.staleLimit = staleLimit;
+            this.refreshing = new AtomicBoolean();
+        }
+
+    }
+
+    /**
+     * Construct a SEED answer cache.
+     *
+     * @param source         underlying data source
+     * @param maxSize        maximum number of answers to keep
+     * @param defaultTtl     default time-to-live in milliseconds
+     * @param staleWindow    number of milliseconds after expiration during which a stale answer can be used
+     */
+    public SeedCache(SeedSource source, int maxSize, long defaultTtl, long staleWindow) {
+        this.source = source;
+        this.maxSize = maxSize;
+        this.defaultTtl = defaultTtl;
+        this.staleWindow = staleWindow;
+        this.ttlMap = new ConcurrentHashMap<String, Long>();
+        this.hitCount = new AtomicLong();
+        this.staleCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictCount = new AtomicLong();
+        this.refreshCount = new AtomicLong();
+        this.loadCount = new AtomicLong();
+        this.loadNanos = new AtomicLong();
+        this.expiryLimit = key -> Long.MAX_VALUE;
+        this.cache = new LinkedHashMap<String, Answer>(maxSize * 4 / 3 + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Answer> eldest) {
+                boolean retVal = (this.size() > SeedCache.this.maxSize);
+                if (retVal) {
+                    evictCount.incrementAndGet();
+                }
+                return retVal;
+            }
+        };
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread retVal = new Thread(r, "SeedCacheRefresh");
+            retVal.setDaemon(true);
+            return retVal;
+        });
+    }
+
+    /**
+     * Specify the time-to-live for the answers to a particular action.
+     *
+     * @param action    name of the action
+     * @param ttl       time-to-live in milliseconds
+     */
+    public void setTtl(String action, long ttl) {
+        this.ttlMap.put(action, ttl);
+    }
+
+    /**
+     * Specify a limit on the expiration time of newly stored answers, for a source whose answers
+     * may already be partly expired (such as a shared cache).
+     *
+     * @param expiryLimit    function returning the latest time at which a newly stored answer for a key
+     *                       may go stale
+     */
+    public void setExpiryLimit(ToLongFunction<String> expiryLimit) {
+        this.expiryLimit = expiryLimit;
+    }
+
+    /**
+     * @return the time-to-live for the answers to a particular action
+     *
+     * @param action    name of the action
+     */
+    public long getTtl(String action) {
+        Long retVal = this.ttlMap.get(action);
+        return (retVal == null ? this.defaultTtl : retVal);
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        String retVal;
+        if (parameter == null) {
+            // This is an invalid request, and we let the source decide how to handle it.
+            retVal = this.source.getData(action, parameter);
+        } else {
+            retVal = this.peek(action, parameter);
+            if (retVal == null) {
+                this.missCount.incrementAndGet();
+                retVal = this.load(key(action, parameter), action, parameter);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a cached answer that can be used without going to the source, or NULL if there is none.
+     *         A stale answer is returned and a refresh is queued, just as in {@link #getData(String, String)}.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    public String peek(String action, String parameter) {
+        String retVal = null;
+        String key = key(action, parameter);
+        long now = this.currentTime();
+        Answer entry;
+        synchronized (this.cache) {
+            entry = this.cache.get(key);
+        }
+        if (entry != null && now < entry.expires) {
+            this.hitCount.incrementAndGet();
+            retVal = entry.value;
+        } else if (entry != null && now < entry.staleLimit) {
+            this.staleCount.incrementAndGet();
+            retVal = entry.value;
+            this.queueRefresh(key, action, parameter, entry);
+        }
+        return retVal;
+    }
+
+    /**
+     * Store an answer obtained elsewhere, such as from a batch query.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     * @param value        answer text
+     */
+    public void put(String action, String parameter, String value) {
+        this.store(key(action, parameter), action, value);
+    }
+
+    /**
+     * @return the number of milliseconds until the cached answer for an action/parameter pair goes
+     *         stale, or 0 if there is no fresh answer
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    public long getTimeLeft(String action, String parameter) {
+        Answer entry;
+        synchronized (this.cache) {
+            entry = this.cache.get(key(action, parameter));
+        }
+        return (entry == null ? 0 : Math.max(0, entry.expires - this.currentTime()));
+    }
+
+    /**
+     * Load a fresh answer from the underlying source, whether or not the current one is stale.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     *
+     * @throws IOException if the source fails
+     */
+    public void refresh(String action, String parameter) throws IOException {
+        this.load(key(action, parameter), action, parameter);
+        this.refreshCount.incrementAndGet();
+    }
+
+    /**
+     * Load an answer from the underlying source and store it in the cache.
+     *
+     * @param key          cache key
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     *
+     * @return the answer loaded
+     *
+     * @throws IOException if the source fails
+     */
+    private String load(String key, String action, String parameter) throws IOException {
+        long start = System.nanoTime();
+        String retVal = this.source.getData(action, parameter);
+        this.loadNanos.addAndGet(System.nanoTime() - start);
+        this.loadCount.incrementAndGet();
+        this.store(key, action, retVal);
+        return retVal;
+    }
+
+    /**
+     * Store an answer in the cache.
+     *
+     * @param key       cache key
+     * @param action    name of the action
+     * @param value     answer text
+     */
+    private void store(String key, String action, String value) {
+        long expires = Math.min(this.currentTime() + this.getTtl(action), this.expiryLimit.applyAsLong(key));
+        Answer entry = new Answer(value, expires, expires + this.staleWindow);
+        synchronized (this.cache) {
+            this.cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Queue a background refresh of a stale answer.  Only one refresh is queued per entry.
+     *
+     * @param key          cache key
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     * @param entry        stale cache entry
+     */
+    private void queueRefresh(final String key, final String action, final String parameter, final Answer entry) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            this.refresher.execute(() -> {
+                try {
+                    this.load(key, action, parameter);
+                    this.refreshCount.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Refresh failed for {} {}: {}", action, parameter, e.getMessage());
+                    // Allow a later request to try again.
+                    entry.refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the cache key for an action/parameter pair
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    protected static String key(String action, String parameter) {
+        return action + "\t" + parameter;
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    protected long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return the number of answers in the cache
+     */
+    public int size() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    /**
+     * @return the number of requests answered by fresh cache entries
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of requests answered by stale cache entries
+     */
+    public long getStaleCount() {
+        return this.staleCount.get();
+    }
+
+    /**
+     * @return the number of requests that had to wait for the underlying source
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return the number of answers evicted to make room for new ones
+     */
+    public long getEvictCount() {
+        return this.evictCount.get();
+    }
+
+    /**
+     * @return the number of completed background refreshes
+     */
+    public long getRefreshCount() {
+        return this.refreshCount.get();
+    }
+
+    /**
+     * @return the estimated number of milliseconds of backend latency saved by the cache
+     */
+    public long getSavedMillis() {
+        long loads = this.loadCount.get();
+        long retVal = 0;
+        if (loads > 0) {
+            double meanNanos = this.loadNanos.get() / (double) loads;
+            retVal = (long) ((this.hitCount.get() + this.staleCount.get()) * meanNanos / 1000000);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a printable summary of the cache statistics
+     */
+    public String getStats() {
+        return String.format("size=%d, hits=%d, stale=%d, misses=%d, evictions=%d, refreshes=%d, savedMs=%d",
+                this.size(), this.getHitCount(), this.getStaleCount(), this.getMissCount(), this.getEvictCount(),
+                this.getRefreshCount(), this.getSavedMillis());
+    }
+
+}
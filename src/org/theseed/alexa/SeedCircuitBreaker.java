@@ -0,0 +1,236 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is a circuit breaker in front of the SEED.  After a run of consecutive failures the
+ * circuit opens, and queries fail immediately with a {@link SeedUnavailableException} instead of
+ * waiting on an unhealthy server.  After a cool-down period a single trial query is let through
+ * (the half-open state).  If it succeeds the circuit closes again; if it fails the circuit re-opens.
+ * Each state transition is logged and counted.
+ *
+ * Only transport errors, timeouts and HTTP 5xx answers count as failures.  An HTTP 4xx answer (such
+ * as a 404 for an unknown genome) comes from a healthy server, so it counts as a success even though
+ * it is passed on to the caller as an exception.
+ */
+public class SeedCircuitBreaker implements SeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedCircuitBreaker.class);
+
+    /** circuit states */
+    public static enum State {
+        /** queries flow normally */
+        CLOSED,
+        /** queries are refused */
+        OPEN,
+        /** a single trial query is in progress */
+        HALF_OPEN;
+    }
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** number of consecutive failures that opens the circuit */
+    private final int threshold;
+    /** milliseconds the circuit stays open before a trial query */
+    private final long openTime;
+    /** current state */
+    private final AtomicReference<State> state;
+    /** number of consecutive failures */
+    private final AtomicInteger failures;
+    /** time at which the circuit last opened */
+    private volatile long openedAt;
+    /** number of times the circuit opened */
+    private final AtomicLong openCount;
+    /** number of times the circuit went half-open */
+    private final AtomicLong halfOpenCount;
+    /** number of times the circuit closed */
+    private final AtomicLong closeCount;
+    /** number of queries refused */
+    private final AtomicLong rejectCount;
+
+    /**
+     * Construct a circuit breaker.
+     *
+     * @param source       underlying data source
+     * @param threshold    number of consecutive failures that opens the circuit
+     * @param openTime     milliseconds the circuit stays open before a trial query
+     */
+    public SeedCircuitBreaker(SeedSource source, int threshold, long openTime) {
+        this.source = source;
+        this.threshold = threshold;
+        this.openTime = openTime;
+        this.state = new AtomicReference<State>(State.CLOSED);
+        this.failures = new AtomicInteger();
+        this.openCount = new AtomicLong();
+        this.halfOpenCount = new AtomicLong();
+        this.closeCount = new AtomicLong();
+        this.rejectCount = new AtomicLong();
+    }
+
+    @Override
+    public String getData(final String action, final String parameter) throws IOException {
+        return this.call(() -> this.source.getData(action, parameter));
+    }
+
+    /**
+     * Run a query under the circuit breaker.  This is used for queries that bypass the underlying
+     * source, such as batch queries, so that their failures still count.
+     *
+     * @param query    query to run
+     *
+     * @return the answer to the query
+     *
+     * @throws IOException if the circuit is open or the SEED could not be reached
+     */
+    public <T> T call(SeedLimiter.Query<T> query) throws IOException {
+        if (! this.allowRequest()) {
+            this.rejectCount.incrementAndGet();
+            throw new SeedUnavailableException(SeedUnavailableException.UNAVAILABLE);
+        }
+        T retVal = null;
+        boolean ok = false;
+        try {
+            retVal = query.run();
+            ok = true;
+        } catch (HttpResponseException e) {
+            ok = (e.getStatusCode() >= 400 && e.getStatusCode() < 500);
+            throw e;
+        } finally {
+            // Every outcome is recorded; otherwise a half-open trial could leave the circuit stuck.
+            if (ok) {
+                this.onSuccess();
+            } else {
+                this.onFailure();
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return TRUE if a query can be sent to the SEED
+     */
+    private boolean allowRequest() {
+        boolean retVal;
+        switch (this.state.get()) {
+        case CLOSED :
+            retVal = true;
+            break;
+        case OPEN :
+            retVal = (this.currentTime() - this.openedAt >= this.openTime && this.transition(State.OPEN, State.HALF_OPEN));
+            break;
+        default :
+            // A trial is already in progress.
+            retVal = false;
+        }
+        return retVal;
+    }
+
+    /**
+     * Record a successful query.
+     */
+    private void onSuccess() {
+        this.failures.set(0);
+        if (this.state.get() == State.HALF_OPEN) {
+            this.transition(State.HALF_OPEN, State.CLOSED);
+        }
+    }
+
+    /**
+     * Record a failed query.
+     */
+    private void onFailure() {
+        int count = this.failures.incrementAndGet();
+        if (this.state.get() == State.HALF_OPEN) {
+            this.openedAt = this.currentTime();
+            this.transition(State.HALF_OPEN, State.OPEN);
+        } else if (count >= this.threshold) {
+            this.openedAt = this.currentTime();
+            this.transition(State.CLOSED, State.OPEN);
+        }
+    }
+
+    /**
+     * Attempt a state transition.
+     *
+     * @param from    expected current state
+     * @param to      new state
+     *
+     * @return TRUE if the transition occurred
+     */
+    private boolean transition(State from, State to) {
+        boolean retVal = this.state.compareAndSet(from, to);
+        if (retVal) {
+            switch (to) {
+            case OPEN :
+                this.openCount.incrementAndGet();
+                break;
+            case HALF_OPEN :
+                this.halfOpenCount.incrementAndGet();
+                break;
+            case CLOSED :
+                this.closeCount.incrementAndGet();
+                break;
+            }
+            log.info("metric=circuit_transition from={} to={} failures={}", from, to, this.failures.get());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    protected long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return the current circuit state
+     */
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * @return the number of times the circuit opened
+     */
+    public long getOpenCount() {
+        return this.openCount.get();
+    }
+
+    /**
+     * @return the number of times the circuit went half-open
+     */
+    public long getHalfOpenCount() {
+        return this.halfOpenCount.get();
+    }
+
+    /**
+     * @return the number of times the circuit closed after being open
+     */
+    public long getCloseCount() {
+        return this.closeCount.get();
+    }
+
+    /**
+     * @return the number of queries refused while the circuit was open
+     */
+    public long getRejectCount() {
+        return this.rejectCount.get();
+    }
+
+    /**
+     * @return a printable summary of the circuit breaker statistics
+     */
+    public String getStats() {
+        return String.format("state=%s, opened=%d, halfOpened=%d, closed=%d, rejected=%d", this.getState(),
+                this.getOpenCount(), this.getHalfOpenCount(), this.getCloseCount(), this.getRejectCount());
+    }
+
+}
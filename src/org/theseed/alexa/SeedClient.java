@@ -0,0 +1,342 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class manages the HTTP connection to the SEED server.  It keeps a bounded pool of keep-alive
+ * connections so that consecutive utterances can reuse an open socket instead of paying a new TCP
+ * handshake.  A single instance is shared by everything in the container (see {@link #getInstance()}),
+ * so the pool survives from one Lambda invocation to the next.
+ *
+ * Responses are requested with gzip compression and decoded as UTF-8 streams (see {@link SeedResponse}).
+ * The usual answer is a single line, but {@link #getFields(String, String, Collection)} asks for a
+ * structured answer with several named fields in one request.
+ *
+ * The following settings (see {@link SeedConfig}) control the client.
+ *
+ *  seedUrl             URL of the SEED server script (default {@link #SEED_URL}); point this at a
+ *                      stand-in server to test without the real SEED
+ *  maxConnections      maximum number of pooled connections (default 10)
+ *  connectTimeout      connection timeout in milliseconds (default 2000)
+ *  readTimeout         socket read timeout in milliseconds (default 5000); it is shortened if the
+ *                      request deadline (see {@link Deadline}) is closer
+ *  idleTimeout         milliseconds after which an idle pooled connection is closed (default 30000)
+ */
+public class SeedClient implements SeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedClient.class);
+
+    /** default URL of the SEED server script */
+    public static final String SEED_URL = "http://bioseed.mcs.anl.gov/~parrello/SEEDtk/svr.cgi";
+
+    /** largest response body that is drained to keep the connection after the parser stops early */
+    private static final long DRAIN_LIMIT = 8192;
+
+    /** shared instance for this container */
+    private static SeedClient instance;
+
+    /** URL of the server script */
+    private final String url;
+    /** connection pool */
+    private final PoolingHttpClientConnectionManager pool;
+    /** HTTP client using the pool */
+    private final CloseableHttpClient client;
+    /** number of requests sent */
+    private final AtomicLong requestCount;
+    /** number of connections opened */
+    private final AtomicLong connectCount;
+    /** number of requests that failed */
+    private final AtomicLong errorCount;
+    /** number of responses that were compressed */
+    private final AtomicLong compressedCount;
+    /** default request configuration */
+    private final RequestConfig config;
+    /** connection timeout in milliseconds */
+    private final int connectTimeout;
+    /** socket read timeout in milliseconds */
+    private final int readTimeout;
+
+    /**
+     * Construct a SEED client.
+     *
+     * @param url               URL of the SEED server script
+     * @param maxConnections    maximum number of connections to keep in the pool
+     * @param connectTimeout    connection timeout in milliseconds
+     * @param readTimeout       socket read timeout in milliseconds
+     * @param idleTimeout       milliseconds after which an idle connection is closed
+     */
+    public SeedClient(String url, int maxConnections, int connectTimeout, int readTimeout, int idleTimeout) {
+        this.url = url;
+        this.requestCount = new AtomicLong();
+        this.connectCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.compressedCount = new AtomicLong();
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        // The connection factory counts the new connections, which tells us how often we get reuse.
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> factory = ManagedHttpClientConnectionFactory.INSTANCE;
+        this.pool = new PoolingHttpClientConnectionManager(new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+            @Override
+            public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+                connectCount.incrementAndGet();
+                return factory.create(route, config);
+            }
+        });
+        // There is only one server, so the per-route limit is the same as the total limit.
+        this.pool.setMaxTotal(maxConnections);
+        this.pool.setDefaultMaxPerRoute(maxConnections);
+        // A Lambda container can be frozen for a long time, so check connections that have been sitting.
+        this.pool.setValidateAfterInactivity(1000);
+        this.config = RequestConfig.custom().setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout).setConnectionRequestTimeout(connectTimeout).build();
+        // We ask for gzip and decompress it ourselves, so that the parser can stop early.
+        this.client = HttpClients.custom().setConnectionManager(this.pool).setDefaultRequestConfig(this.config)
+                .disableContentCompression().evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * @return the shared client for this container, creating it if necessary
+     */
+    public static synchronized SeedClient getInstance() {
+        if (instance == null) {
+            instance = new SeedClient(SeedConfig.getString("seedUrl", SEED_URL),
+                    SeedConfig.getInt("maxConnections", 10),
+                    SeedConfig.getInt("connectTimeout", 2000),
+                    SeedConfig.getInt("readTimeout", 5000),
+                    SeedConfig.getInt("idleTimeout", 30000));
+        }
+        return instance;
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        return this.execute(formatQuery(action, parameter), SeedResponse::readLine);
+    }
+
+    /**
+     * Ask the SEED for a structured answer in the fields format (see {@link SeedResponse}).  This
+     * allows several values to be returned by a single request.  If the server does not support the
+     * fields format, the one-line answer is returned in the {@link SeedResponse#TEXT} field.
+     *
+     * @param action       name of the action to perform
+     * @param parameter    parameter for the action
+     * @param wanted       names of the fields wanted, or NULL for all of them; reading of the response
+     *                     stops when all the wanted fields have been found
+     *
+     * @return a map of field names to values
+     *
+     * @throws IOException if the SEED could not be reached
+     */
+    public Map<String, String> getFields(String action, String parameter, final Collection<String> wanted)
+            throws IOException {
+        return this.execute(formatQuery(action, parameter) + ";format=fields",
+                in -> SeedResponse.readFields(in, wanted));
+    }
+
+    /**
+     * This interface represents a parser for a response body.
+     *
+     * @param <T>    type of the parsed answer
+     */
+    private interface BodyParser<T> {
+        /**
+         * @return the parsed answer
+         *
+         * @param in    stream containing the decompressed response body
+         *
+         * @throws IOException if there is a read error
+         */
+        public T parse(InputStream in) throws IOException;
+    }
+
+    /**
+     * Send a request to the SEED and parse the response.
+     *
+     * @param query     query string for the request
+     * @param parser    parser for the response body
+     *
+     * @return the parsed answer
+     *
+     * @throws IOException if the SEED could not be reached
+     */
+    private <T> T execute(String query, BodyParser<T> parser) throws IOException {
+        T retVal;
+        long remaining = Deadline.remaining();
+        if (remaining <= 0) {
+            throw new SeedUnavailableException(SeedUnavailableException.TIMEOUT);
+        }
+        this.requestCount.incrementAndGet();
+        HttpGet request = new HttpGet(this.url + "?" + query);
+        request.setHeader("Accept-Encoding", "gzip");
+        if (remaining < this.readTimeout) {
+            // Do not let the socket wait past the request deadline.
+            int timeout = (int) remaining;
+            request.setConfig(RequestConfig.copy(this.config).setSocketTimeout(timeout)
+                    .setConnectTimeout(Math.min(timeout, this.connectTimeout))
+                    .setConnectionRequestTimeout(Math.min(timeout, this.connectTimeout)).build());
+        }
+        try (CloseableHttpResponse response = this.client.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            try {
+                int responseCode = response.getStatusLine().getStatusCode();
+                if (responseCode != 200) {
+                    throw new HttpResponseException(responseCode, "Fatal internet error " + Integer.toString(responseCode));
+                }
+                InputStream in = entity.getContent();
+                Header encoding = entity.getContentEncoding();
+                if (encoding != null && "gzip".equalsIgnoreCase(encoding.getValue())) {
+                    this.compressedCount.incrementAndGet();
+                    in = new GZIPInputStream(in, 512);
+                }
+                retVal = parser.parse(in);
+            } finally {
+                // Drain the rest of the response so the connection goes back into the pool.  If the rest
+                // is known to be large, it is cheaper to close the connection than to read it.
+                if (entity != null && entity.getContentLength() <= DRAIN_LIMIT) {
+                    EntityUtils.consumeQuietly(entity);
+                }
+            }
+        } catch (IOException e) {
+            this.errorCount.incrementAndGet();
+            throw e;
+        }
+        return retVal;
+    }
+
+    /**
+     * Resolve the server host name, so that the address is in the JVM's DNS cache before the first
+     * real request.
+     *
+     * @throws IOException if the host name cannot be resolved
+     */
+    public void resolve() throws IOException {
+        String host = new URL(this.url).getHost();
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        log.debug("{} resolved to {} address(es).", host, addresses.length);
+    }
+
+    /**
+     * Open a connection to the server and leave it in the pool, so that the first real request does
+     * not pay for the TCP handshake.  This is done with a HEAD request, which does not ask the SEED
+     * for any data.
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public void preconnect() throws IOException {
+        HttpHead request = new HttpHead(this.url);
+        try (CloseableHttpResponse response = this.client.execute(request)) {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    /**
+     * @return the query string for a SEED request
+     *
+     * @param action       name of the action to perform
+     * @param parameter    parameter for the action
+     *
+     * @throws IOException if the encoding is not supported
+     */
+    protected static String formatQuery(String action, String parameter) throws IOException {
+        StringBuilder retVal = new StringBuilder(80);
+        retVal.append("action=");
+        retVal.append(URLEncoder.encode(action, "UTF-8"));
+        retVal.append(";parameter=");
+        retVal.append(URLEncoder.encode(parameter, "UTF-8"));
+        return retVal.toString();
+    }
+
+    /**
+     * @return the URL of the SEED server script
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * @return the number of requests sent
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * @return the number of connections opened
+     */
+    public long getConnectCount() {
+        return this.connectCount.get();
+    }
+
+    /**
+     * @return the number of requests that reused a pooled connection
+     */
+    public long getReuseCount() {
+        return Math.max(0, this.requestCount.get() - this.connectCount.get());
+    }
+
+    /**
+     * @return the number of requests that failed
+     */
+    public long getErrorCount() {
+        return this.errorCount.get();
+    }
+
+    /**
+     * @return the number of responses that were compressed
+     */
+    public long getCompressedCount() {
+        return this.compressedCount.get();
+    }
+
+    /**
+     * @return a printable summary of the connection statistics
+     */
+    public String getStats() {
+        PoolStats stats = this.pool.getTotalStats();
+        return String.format("requests=%d, connects=%d, reused=%d, errors=%d, compressed=%d, leased=%d, idle=%d, "
+                + "pending=%d", this.getRequestCount(), this.getConnectCount(), this.getReuseCount(),
+                this.getErrorCount(), this.getCompressedCount(), stats.getLeased(), stats.getAvailable(),
+                stats.getPending());
+    }
+
+    /**
+     * Close all the connections in the pool.
+     */
+    public void close() {
+        try {
+            this.client.close();
+        } catch (IOException e) {
+            log.warn("Error closing SEED client: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class coalesces identical concurrent SEED queries.  The first caller to ask a particular
+ * action/parameter question performs the fetch from the underlying {@link SeedSource}.  Any other
+ * caller that asks the same question while that fetch is in flight waits for it and receives the
+ * same answer (or the same error).
+ *
+ * The in-flight fetches are kept in a concurrent hash map, so callers asking different questions
+ * never contend with each other.
+ */
+public class SeedCoalescer implements SeedSource {
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** map of keys to in-flight fetches */
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight;
+    /** number of fetches performed */
+    private final AtomicLong fetchCount;
+    /** number of requests that shared another caller's fetch */
+    private final AtomicLong sharedCount;
+
+    /**
+     * Construct a query coalescer.
+     *
+     * @param source    underlying data source
+     */
+    public SeedCoalescer(SeedSource source) {
+        this.source = source;
+        this.inFlight = new ConcurrentHashMap<String, CompletableFuture<String>>();
+        this.fetchCount = new AtomicLong();
+        this.sharedCount = new AtomicLong();
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        String retVal;
+        if (parameter == null) {
+            retVal = this.source.getData(action, parameter);
+        } else {
+            String key = SeedCache.key(action, parameter);
+            CompletableFuture<String> future = new CompletableFuture<String>();
+            CompletableFuture<String> existing = this.inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                // We are the leader, so we do the fetch.
+                this.fetchCount.incrementAndGet();
+                try {
+                    retVal = this.source.getData(action, parameter);
+                    future.complete(retVal);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    this.inFlight.remove(key, future);
+                }
+            } else {
+                // Someone else is fetching, so we wait for the answer.
+                this.sharedCount.incrementAndGet();
+                retVal = await(existing);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the result of another caller's fetch, waiting no longer than our own request deadline
+     *
+     * @param future    future for the fetch
+     *
+     * @throws IOException if the fetch failed
+     */
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            String retVal;
+            long remaining = Deadline.remaining();
+            if (remaining == Long.MAX_VALUE) {
+                retVal = future.get();
+            } else {
+                retVal = future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            }
+            return retVal;
+        } catch (TimeoutException e) {
+            throw new SeedUnavailableException(SeedUnavailableException.TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for SEED.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * @return the number of fetches performed
+     */
+    public long getFetchCount() {
+        return this.fetchCount.get();
+    }
+
+    /**
+     * @return the number of requests that shared another caller's fetch
+     */
+    public long getSharedCount() {
+        return this.sharedCount.get();
+    }
+
+    /**
+     * @return the number of fetches currently in flight
+     */
+    public int getInFlight() {
+        return this.inFlight.size();
+    }
+
+    /**
+     * @return a printable summary of the coalescing statistics
+     */
+    public String getStats() {
+        return String.format("fetches=%d, shared=%d, inFlight=%d", this.getFetchCount(), this.getSharedCount(),
+                this.getInFlight());
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.theseed.alexa;
+
+/**
+ * This class retrieves configuration settings for the skill.  Each setting has a camel-case name,
+ * such as "connectTimeout".  It can be specified as a system property with a prefix of "seed."
+ * (e.g. "seed.connectTimeout") or as an environment variable in upper-case with underscores
+ * and a prefix of "SEED_" (e.g. "SEED_CONNECT_TIMEOUT"), which is how settings are specified
+ * in the Lambda console.  System properties take precedence.
+ */
+public class SeedConfig {
+
+    /**
+     * @return the string value of a setting
+     *
+     * @param name            name of the setting
+     * @param defaultValue    value to return if the setting is not specified
+     */
+    public static String getString(String name, String defaultValue) {
+        String retVal = System.getProperty("seed." + name);
+        if (retVal == null) {
+            retVal = System.getenv(envName(name));
+        }
+        if (retVal == null || retVal.isEmpty()) {
+            retVal = defaultValue;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the integer value of a setting
+     *
+     * @param name            name of the setting
+     * @param defaultValue    value to return if the setting is not specified or invalid
+     */
+    public static int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+
+    /**
+     * @return the long integer value of a setting
+     *
+     * @param name            name of the setting
+     * @param defaultValue    value to return if the setting is not specified or invalid
+     */
+    public static long getLong(String name, long defaultValue) {
+        long retVal = defaultValue;
+        String value = getString(name, null);
+        if (value != null) {
+            try {
+                retVal = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                retVal = defaultValue;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the floating-point value of a setting
+     *
+     * @param name            name of the setting
+     * @param defaultValue    value to return if the setting is not specified or invalid
+     */
+    public static double getDouble(String name, double defaultValue) {
+        double retVal = defaultValue;
+        String value = getString(name, null);
+        if (value != null) {
+            try {
+                retVal = Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                retVal = defaultValue;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the boolean value of a setting
+     *
+     * @param name            name of the setting
+     * @param defaultValue    value to return if the setting is not specified
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        boolean retVal = defaultValue;
+        String value = getString(name, null);
+        if (value != null) {
+            retVal = Boolean.parseBoolean(value.trim());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the environment variable name for a setting
+     *
+     * @param name    camel-case name of the setting
+     */
+    private static String envName(String name) {
+        StringBuilder retVal = new StringBuilder(name.length() + 10);
+        retVal.append("SEED_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                retVal.append('_');
+            }
+            retVal.append(Character.toUpperCase(c));
+        }
+        return retVal.toString();
+    }
+
+}
@@ -0,0 +1,338 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * This class sends hedged requests to the SEED.  Each query is sent to the underlying source on a
+ * worker thread.  If it has not answered by the time a configurable latency percentile of recent
+ * queries has passed, a second identical query is sent, and whichever answers first is used.  The
+ * caller never waits past its request deadline (see {@link Deadline}).
+ *
+ * The queries run on a fixed number of threads, and a query that finds them all busy waits for one.
+ * A hedge is extra load on the SEED, so if an admission controller is attached (see
+ * {@link #setLimiter(SeedLimiter)}) each hedge takes one of its slots, and no hedge is sent when
+ * there is no free slot.
+ */
+public class SeedHedger implements SeedSource {
+
+    /** minimum number of latency samples needed before the percentile is trusted */
+    private static final int MIN_SAMPLES = 20;
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** executor for the queries */
+    private final ThreadPoolExecutor executor;
+    /** admission controller whose slots the hedges use, or NULL if hedges are not limited */
+    private volatile SeedLimiter limiter;
+    /** recent query latencies */
+    private final LatencyTracker tracker;
+    /** latency percentile after which a hedge is sent */
+    private final double percentile;
+    /** minimum hedge delay in milliseconds */
+    private final long minDelay;
+    /** hedge delay to use until there are enough samples */
+    private final long defaultDelay;
+    /** number of queries */
+    private final AtomicLong requestCount;
+    /** number of hedges sent */
+    private final AtomicLong hedgeCount;
+    /** number of hedges not sent because the admission controller had no free slot */
+    private final AtomicLong skipCount;
+    /** number of hedges that answered first */
+    private final AtomicLong hedgeWinCount;
+    /** number of queries that ran out of time */
+    private final AtomicLong timeoutCount;
+
+    /**
+     * This class tracks recent latencies in a ring buffer and computes percentiles from them.
+     */
+    private static class LatencyTracker {
+        /** ring buffer of latencies */
+        private final long[] samples;
+        /** total number of samples recorded */
+        private long count;
+        /** cached percentile value */
+        private long cached;
+        /** sample count when the percentile was cached */
+        private long cachedAt;
+
+        /**
+         * Create a latency tracker.
+         *
+         * @param size    number of samples to keep
+         */
+        private LatencyTracker(int size) {
+            this.samples = new long[size];
+            this.cachedAt = -1;
+        }
+
+        /**
+         * Record a latency.
+         *
+         * @param millis    latency in milliseconds
+         */
+        private synchronized void record(long millis) {
+            this.samples[(int) (this.count % this.samples.length)] = millis;
+            this.count++;
+        }
+
+        /**
+         * @return the specified percentile of the recent latencies, or -1 if there are not enough samples
+         *
+         * @param pct    percentile to compute (0 to 100)
+         */
+        private synchronized long percentile(double pct) {
+            long retVal = -1;
+            if (this.count >= MIN_SAMPLES) {
+                // Recompute only occasionally, since the value changes slowly.
+                if (this.cachedAt < 0 || this.count - this.cachedAt >= 16) {
+                    int n = (int) Math.min(this.count, this.samples.length);
+                    long[] sorted = Arrays.copyOf(this.samples, n);
+                    Arrays.sort(sorted);
+                    this.cached = sorted[Math.min(n - 1, (int) Math.ceil(pct / 100.0 * n) - 1)];
+                    this.cachedAt = this.count;
+                }
+                retVal = this.cached;
+            }
+            return retVal;
+        }
+    }
+
+    /**
+     * Construct a hedging layer.
+     *
+     * @param source          underlying data source
+     * @param percentile      latency percentile after which a hedge is sent
+     * @param minDelay        minimum hedge delay in milliseconds
+     * @param defaultDelay    hedge delay to use until enough latencies have been observed
+     * @param threads         maximum number of queries running at once
+     */
+    public SeedHedger(SeedSource source, double percentile, long minDelay, long defaultDelay, int threads) {
+        this.source = source;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.defaultDelay = defaultDelay;
+        this.tracker = new LatencyTracker(256);
+        this.requestCount = new AtomicLong();
+        this.hedgeCount = new AtomicLong();
+        this.skipCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), r -> {
+                    Thread retVal = new Thread(r, "SeedHedger");
+                    retVal.setDaemon(true);
+                    return retVal;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Attach an admission controller, so that each hedge takes one of its slots.
+     *
+     * @param limiter    admission controller in front of this hedging layer
+     */
+    public void setLimiter(SeedLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        long deadline = Deadline.get();
+        long remaining = Deadline.remaining();
+        if (remaining <= 0) {
+            this.timeoutCount.incrementAndGet();
+            throw new SeedUnavailableException(SeedUnavailableException.TIMEOUT);
+        }
+        this.requestCount.incrementAndGet();
+        String retVal;
+        CompletableFuture<String> answer = this.launch(action, parameter, deadline);
+        try {
+            long delay = this.getHedgeDelay();
+            if (delay < remaining) {
+                answer = this.hedgeIfSlow(answer, delay, action, parameter, deadline);
+            }
+            remaining = Deadline.remaining();
+            if (remaining == Long.MAX_VALUE) {
+                retVal = answer.get();
+            } else {
+                retVal = answer.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            this.timeoutCount.incrementAndGet();
+            throw new SeedUnavailableException(SeedUnavailableException.TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for SEED.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Wait for the primary query to answer, and send a hedge if it is too slow.
+     *
+     * @param primary      future for the primary query
+     * @param delay        milliseconds to wait before sending the hedge
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     * @param deadline     deadline for the query
+     *
+     * @return a future for the answer
+     *
+     * @throws InterruptedException if the wait is interrupted
+     * @throws ExecutionException if the primary query failed
+     */
+    private CompletableFuture<String> hedgeIfSlow(CompletableFuture<String> primary, long delay, String action,
+            String parameter, long deadline) throws InterruptedException, ExecutionException {
+        CompletableFuture<String> retVal = primary;
+        try {
+            primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            final SeedLimiter slots = this.limiter;
+            if (slots != null && ! slots.tryAcquire()) {
+                this.skipCount.incrementAndGet();
+            } else {
+                this.hedgeCount.incrementAndGet();
+                CompletableFuture<String> hedge = this.launch(action, parameter, deadline);
+                if (slots != null) {
+                    hedge.whenComplete((answer, error) -> slots.releaseExtra());
+                }
+                retVal = this.firstSuccess(primary, hedge);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a future for a query running on a worker thread
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     * @param deadline     deadline for the query, to be passed to the worker thread
+     */
+    private CompletableFuture<String> launch(final String action, final String parameter, final long deadline) {
+        final CompletableFuture<String> retVal = new CompletableFuture<String>();
+        this.executor.execute(() -> {
+            Deadline.set(deadline);
+            long start = System.nanoTime();
+            try {
+                String answer = this.source.getData(action, parameter);
+                this.tracker.record((System.nanoTime() - start) / 1000000);
+                retVal.complete(answer);
+            } catch (Throwable t) {
+                retVal.completeExceptionally(t);
+            } finally {
+                Deadline.clear();
+            }
+        });
+        return retVal;
+    }
+
+    /**
+     * @return a future that completes with the first successful answer, or with the last error if
+     *         both queries fail
+     *
+     * @param primary    future for the primary query
+     * @param hedge      future for the hedge query
+     */
+    private CompletableFuture<String> firstSuccess(CompletableFuture<String> primary, CompletableFuture<String> hedge) {
+        final CompletableFuture<String> retVal = new CompletableFuture<String>();
+        final AtomicInteger failures = new AtomicInteger();
+        BiConsumer<String, Throwable> primaryDone = (answer, error) -> {
+            if (error == null) {
+                retVal.complete(answer);
+            } else if (failures.incrementAndGet() == 2) {
+                retVal.completeExceptionally(error);
+            }
+        };
+        BiConsumer<String, Throwable> hedgeDone = (answer, error) -> {
+            if (error == null) {
+                if (retVal.complete(answer)) {
+                    this.hedgeWinCount.incrementAndGet();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                retVal.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(primaryDone);
+        hedge.whenComplete(hedgeDone);
+        return retVal;
+    }
+
+    /**
+     * @return the number of milliseconds to wait before sending a hedge
+     */
+    public long getHedgeDelay() {
+        long retVal = this.tracker.percentile(this.percentile);
+        if (retVal < 0) {
+            retVal = this.defaultDelay;
+        }
+        return Math.max(retVal, this.minDelay);
+    }
+
+    /**
+     * @return the number of queries
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * @return the number of hedges sent
+     */
+    public long getHedgeCount() {
+        return this.hedgeCount.get();
+    }
+
+    /**
+     * @return the number of hedges not sent because the admission controller had no free slot
+     */
+    public long getSkipCount() {
+        return this.skipCount.get();
+    }
+
+    /**
+     * @return the number of hedges that answered before the primary query
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWinCount.get();
+    }
+
+    /**
+     * @return the number of queries that ran out of time
+     */
+    public long getTimeoutCount() {
+        return this.timeoutCount.get();
+    }
+
+    /**
+     * @return a printable summary of the hedging statistics
+     */
+    public String getStats() {
+        long requests = this.getRequestCount();
+        double rate = (requests == 0 ? 0.0 : this.getHedgeCount() / (double) requests);
+        return String.format("requests=%d, hedges=%d, hedgeRate=%.3f, hedgesSkipped=%d, hedgeWins=%d, timeouts=%d, "
+                + "hedgeDelayMs=%d", requests, this.getHedgeCount(), rate, this.getSkipCount(), this.getHedgeWinCount(),
+                this.getTimeoutCount(), this.getHedgeDelay());
+    }
+
+}
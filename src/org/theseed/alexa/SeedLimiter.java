@@ -0,0 +1,290 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is an admission controller in front of the SEED.  It limits the number of queries in
+ * progress at once, so that a traffic spike does not overload the single SEED host and slow every
+ * query down.  The limit adapts to the observed latency in the AIMD style:  each query that answers
+ * within the target latency raises the limit by about one per limit's worth of queries (additive
+ * increase), and each query that is slower than the target or fails cuts it by a fixed fraction
+ * (multiplicative decrease).  Failures that say nothing about the SEED's capacity do not cut the
+ * limit:  a {@link SeedUnavailableException} (such as a fast failure from an open circuit breaker)
+ * leaves the limit alone unless the query was also slow, and an HTTP 4xx answer (such as a 404 for an
+ * unknown genome) is judged by its latency like any other answer.
+ *
+ * A query that arrives when the limit is reached waits in a short queue.  If the queue is full, or
+ * the query cannot be admitted before its maximum wait or its request deadline (see {@link Deadline}),
+ * it is rejected at once with a {@link SeedUnavailableException} whose message tells the user the
+ * SEED is busy.
+ */
+public class SeedLimiter implements SeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedLimiter.class);
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** minimum concurrency limit */
+    private final double minLimit;
+    /** maximum concurrency limit */
+    private final double maxLimit;
+    /** target latency in nanoseconds */
+    private final long target;
+    /** factor applied to the limit after a slow or failed query */
+    private final double backoff;
+    /** maximum number of queries waiting */
+    private final int queueSize;
+    /** maximum milliseconds to wait for admission */
+    private final long maxWait;
+    /** lock for the admission state */
+    private final Object lock;
+    /** current concurrency limit; guarded by the lock */
+    private double limit;
+    /** number of queries in progress; guarded by the lock */
+    private int inFlight;
+    /** number of queries waiting; guarded by the lock */
+    private int waiting;
+    /** largest number of queries seen waiting at once; guarded by the lock */
+    private int maxWaiting;
+    /** number of queries admitted */
+    private final AtomicLong admitCount;
+    /** number of queries that had to wait before admission */
+    private final AtomicLong queuedCount;
+    /** number of queries rejected because the queue was full */
+    private final AtomicLong fullCount;
+    /** number of queries rejected because they waited too long */
+    private final AtomicLong expiredCount;
+
+    /**
+     * This interface represents a query to run under admission control.
+     *
+     * @param <T>    type of the answer
+     */
+    public interface Query<T> {
+
+        /**
+         * @return the answer to the query
+         *
+         * @throws IOException if the SEED could not be reached
+         */
+        public T run() throws IOException;
+
+    }
+
+    /**
+     * Construct an admission controller.
+     *
+     * @param source       underlying data source
+     * @param initial      starting concurrency limit
+     * @param minLimit     minimum concurrency limit
+     * @param maxLimit     maximum concurrency limit
+     * @param target       target query latency in milliseconds
+     * @param backoff      factor applied to the limit after a slow or failed query
+     * @param queueSize    maximum number of queries waiting for admission
+     * @param maxWait      maximum milliseconds a query waits for admission
+     */
+    public SeedLimiter(SeedSource source, int initial, int minLimit, int maxLimit, long target, double backoff,
+            int queueSize, long maxWait) {
+        this.source = source;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initial));
+        this.target = target * 1000000L;
+        this.backoff = backoff;
+        this.queueSize = queueSize;
+        this.maxWait = maxWait;
+        this.lock = new Object();
+        this.admitCount = new AtomicLong();
+        this.queuedCount = new AtomicLong();
+        this.fullCount = new AtomicLong();
+        this.expiredCount = new AtomicLong();
+    }
+
+    @Override
+    public String getData(final String action, final String parameter) throws IOException {
+        return this.call(() -> this.source.getData(action, parameter));
+    }
+
+    /**
+     * Run a query under admission control.
+     *
+     * @param query    query to run
+     *
+     * @return the answer to the query
+     *
+     * @throws IOException if the query was rejected or the SEED could not be reached
+     */
+    public <T> T call(Query<T> query) throws IOException {
+        this.acquire();
+        T retVal;
+        boolean adjust = true;
+        boolean slow = true;
+        long start = System.nanoTime();
+        try {
+            retVal = query.run();
+            slow = (System.nanoTime() - start > this.target);
+        } catch (SeedUnavailableException e) {
+            slow = (System.nanoTime() - start > this.target);
+            adjust = slow;
+            throw e;
+        } catch (HttpResponseException e) {
+            if (e.getStatusCode() >= 400 && e.getStatusCode() < 500) {
+                slow = (System.nanoTime() - start > this.target);
+            }
+            throw e;
+        } finally {
+            this.release(adjust, slow);
+        }
+        return retVal;
+    }
+
+    /**
+     * Wait for admission.
+     *
+     * @throws SeedUnavailableException if the query cannot be admitted
+     */
+    private void acquire() throws SeedUnavailableException {
+        boolean admitted = false;
+        boolean queued = false;
+        synchronized (this.lock) {
+            if (this.inFlight < (int) this.limit) {
+                admitted = true;
+            } else if (this.waiting < this.queueSize) {
+                queued = true;
+                this.waiting++;
+                this.maxWaiting = Math.max(this.maxWaiting, this.waiting);
+                long end = System.currentTimeMillis() + Math.min(this.maxWait, Deadline.remaining());
+                try {
+                    long wait = end - System.currentTimeMillis();
+                    while (this.inFlight >= (int) this.limit && wait > 0) {
+                        this.lock.wait(wait);
+                        wait = end - System.currentTimeMillis();
+                    }
+                    admitted = (this.inFlight < (int) this.limit);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    this.waiting--;
+                }
+            }
+            if (admitted) {
+                this.inFlight++;
+            }
+        }
+        if (queued) {
+            this.queuedCount.incrementAndGet();
+        }
+        if (admitted) {
+            this.admitCount.incrementAndGet();
+        } else {
+            if (queued) {
+                this.expiredCount.incrementAndGet();
+            } else {
+                this.fullCount.incrementAndGet();
+            }
+            log.debug("SEED query rejected by admission control.");
+            throw new SeedUnavailableException(SeedUnavailableException.BUSY);
+        }
+    }
+
+    /**
+     * Take a slot for an extra query, such as a hedge, without waiting.  The slot is only taken if no
+     * query is waiting for one.
+     *
+     * @return TRUE if a slot was taken, in which case it must be released with {@link #releaseExtra()}
+     */
+    public boolean tryAcquire() {
+        boolean retVal;
+        synchronized (this.lock) {
+            retVal = (this.inFlight < (int) this.limit && this.waiting == 0);
+            if (retVal) {
+                this.inFlight++;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Release a slot taken by {@link #tryAcquire()}.  The limit is not adjusted, since the query the
+     * extra one was sent for is judged on its own.
+     */
+    public void releaseExtra() {
+        this.release(false, false);
+    }
+
+    /**
+     * Release an admitted query's slot and adjust the limit.
+     *
+     * @param adjust    TRUE if the limit should be adjusted
+     * @param slow      TRUE if the query was slower than the target or failed
+     */
+    private void release(boolean adjust, boolean slow) {
+        synchronized (this.lock) {
+            this.inFlight--;
+            if (adjust && slow) {
+                this.limit = Math.max(this.minLimit, this.limit * this.backoff);
+            } else if (adjust) {
+                this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+            }
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getLimit() {
+        synchronized (this.lock) {
+            return (int) this.limit;
+        }
+    }
+
+    /**
+     * @return the number of queries waiting for admission
+     */
+    public int getQueueDepth() {
+        synchronized (this.lock) {
+            return this.waiting;
+        }
+    }
+
+    /**
+     * @return the number of queries rejected, for either reason
+     */
+    public long getRejectCount() {
+        return this.fullCount.get() + this.expiredCount.get();
+    }
+
+    /**
+     * @return a structured metric line for the admission controller
+     */
+    public String getMetricLine() {
+        int limitNow;
+        int inFlightNow;
+        int waitingNow;
+        int waitingMax;
+        synchronized (this.lock) {
+            limitNow = (int) this.limit;
+            inFlightNow = this.inFlight;
+            waitingNow = this.waiting;
+            waitingMax = this.maxWaiting;
+        }
+        return String.format("metric=admission limit=%d in_flight=%d queue_depth=%d queue_max=%d admitted=%d "
+                + "queued=%d rejected_full=%d rejected_wait=%d", limitNow, inFlightNow, waitingNow, waitingMax,
+                this.admitCount.get(), this.queuedCount.get(), this.fullCount.get(), this.expiredCount.get());
+    }
+
+    /**
+     * @return a printable summary of the admission statistics
+     */
+    public String getStats() {
+        return String.format("limit=%d, queue=%d, admitted=%d, rejected=%d", this.getLimit(), this.getQueueDepth(),
+                this.admitCount.get(), this.getRejectCount());
+    }
+
+}
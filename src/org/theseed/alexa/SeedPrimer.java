@@ -0,0 +1,145 @@
+package org.theseed.alexa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
+
+/**
+ * This class primes a new container so that the first real request costs about the same as a warm
+ * one.  It runs synthetic requests through the full request pipeline using a stubbed SEED source,
+ * which loads the classes and initializes the JSON serializers, and then resolves the SEED host and
+ * opens a pooled connection to it.  Each phase is timed, and the timings are available as a report.
+ * The synthetic requests are not recorded in the intent metrics, and the stubbed source keeps them
+ * out of the SEED access statistics, so they do not show up as traffic.
+ */
+public class SeedPrimer {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedPrimer.class);
+
+    /** template for a synthetic request:  application ID, request ID, request body */
+    private static final String REQUEST_TEMPLATE = "{\"version\":\"1.0\",\"session\":{\"new\":true,\"sessionId\":\"prime\"," +
+            "\"application\":{\"applicationId\":\"%s\"},\"attributes\":{},\"user\":{\"userId\":\"prime\"}}," +
+            "\"request\":{%s,\"requestId\":\"%s\",\"timestamp\":\"2016-05-15T15:25:06Z\"}}";
+
+    /** synthetic launch request */
+    private static final String LAUNCH_REQUEST = "\"type\":\"LaunchRequest\"";
+
+    /** synthetic glossary request */
+    private static final String TEXT_REQUEST = "\"type\":\"IntentRequest\",\"intent\":{\"name\":\"TextIntent\"," +
+            "\"slots\":{\"Term\":{\"name\":\"Term\",\"value\":\"genome\"}}}";
+
+    /** synthetic SEED request */
+    private static final String COUNT_REQUEST = "\"type\":\"IntentRequest\",\"intent\":{\"name\":\"CountIntent\"," +
+            "\"slots\":{\"ObjectType\":{\"name\":\"ObjectType\",\"value\":\"genomes\"}}}";
+
+    /** stub SEED source used for the synthetic requests */
+    private static final SeedSource STUB_SOURCE = (action, parameter) -> "Priming answer.";
+
+    /** map of phase names to elapsed milliseconds, in execution order */
+    private final Map<String, Double> timings;
+    /** supported application IDs */
+    private final Set<String> applicationIds;
+
+    /**
+     * Construct a primer.
+     *
+     * @param applicationIds    set of supported application IDs
+     */
+    public SeedPrimer(Set<String> applicationIds) {
+        this.applicationIds = applicationIds;
+        this.timings = new LinkedHashMap<String, Double>();
+    }
+
+    /**
+     * Record the time taken by a phase.
+     *
+     * @param phase    name of the phase
+     * @param start    start time of the phase, in nanoseconds
+     *
+     * @return the current time in nanoseconds, for use as the start of the next phase
+     */
+    public long record(String phase, long start) {
+        long retVal = System.nanoTime();
+        this.timings.put(phase, (retVal - start) / 1000000.0);
+        return retVal;
+    }
+
+    /**
+     * Prime the container.
+     *
+     * @param client    HTTP client for the SEED server
+     */
+    public void prime(SeedClient client) {
+        // Run the synthetic requests through a pipeline that uses the stub source.
+        SeedQuerySpeechlet speechlet = new SeedQuerySpeechlet(STUB_SOURCE, false);
+        SpeechletRequestStreamHandler pipeline = new SpeechletRequestStreamHandler(speechlet, this.applicationIds) {};
+        long start = System.nanoTime();
+        this.runRequest(pipeline, LAUNCH_REQUEST, "launch");
+        start = this.record("firstLaunch", start);
+        this.runRequest(pipeline, TEXT_REQUEST, "text");
+        start = this.record("firstText", start);
+        this.runRequest(pipeline, COUNT_REQUEST, "count");
+        start = this.record("firstCount", start);
+        // Run them a second time to show the warm cost.
+        this.runRequest(pipeline, LAUNCH_REQUEST, "launch2");
+        this.runRequest(pipeline, TEXT_REQUEST, "text2");
+        this.runRequest(pipeline, COUNT_REQUEST, "count2");
+        start = this.record("warmRequests", start);
+        // Prepare the network connection.
+        try {
+            client.resolve();
+            start = this.record("dns", start);
+            client.preconnect();
+            this.record("connect", start);
+        } catch (IOException e) {
+            log.warn("Could not pre-connect to SEED: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run a synthetic request through a pipeline.
+     *
+     * @param pipeline     request handler to use
+     * @param body         body of the request
+     * @param requestId    ID for the request
+     */
+    private void runRequest(SpeechletRequestStreamHandler pipeline, String body, String requestId) {
+        String appId = this.applicationIds.iterator().next();
+        String request = String.format(REQUEST_TEMPLATE, appId, body, requestId);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try {
+            pipeline.handleRequest(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), outStream, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Priming request {} failed: {}", requestId, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the phase timings, in execution order
+     */
+    public Map<String, Double> getTimings() {
+        return this.timings;
+    }
+
+    /**
+     * @return a printable report of the phase timings
+     */
+    public String getReport() {
+        StringBuilder retVal = new StringBuilder(200);
+        retVal.append("Startup timings (ms):");
+        for (Map.Entry<String, Double> timing : this.timings.entrySet()) {
+            retVal.append(String.format(" %s=%.1f", timing.getKey(), timing.getValue()));
+        }
+        return retVal.toString();
+    }
+
+}
@@ -1,27 +1,42 @@
 package org.theseed.alexa;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
 import java.util.HashSet;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 
 /**
  * This class is the handler for an AWS Lambda function powering an Alexa Skills
  * Kit experience. To set it up, simply set the handler field in the AWS Lambda
  * console to "org.theseed.alexa.org.theseed.alexaHandler". Upload the resulting zip file to
  * power your function.
+ *
+ * The SDK's stream handler cannot be extended, so the requests are passed on to a private instance of
+ * it after the deadline is set and the static answers and traffic capture are handled here.
  */
-public final class SeedQueryHandler extends SpeechletRequestStreamHandler implements RequestHandler<String, String> {
+public final class SeedQueryHandler implements RequestStreamHandler, RequestHandler<String, String> {
+    /** time at which this class was loaded, in nanoseconds */
+    private static final long LOAD_TIME = System.nanoTime();
+    private static final Logger log = LoggerFactory.getLogger(SeedQueryHandler.class);
     private static final Set<String> supportedApplicationIds;
 
+    /** text spoken when a string request cannot be processed */
+    static final String ERROR_TEXT = "I am sorry, but something went wrong with your request.";
+    /** response returned when a string request cannot be processed */
+    private static final String ERROR_RESPONSE = "{\"version\":\"1.0\",\"response\":{\"outputSpeech\":" +
+            "{\"type\":\"PlainText\",\"text\":\"" + ERROR_TEXT + "\"}," +
+            "\"shouldEndSession\":true}}";
+
     static {
         /*
          * our special application ID
@@ -30,21 +45,173 @@ public final class SeedQueryHandler extends SpeechletRequestStreamHandler implem
         supportedApplicationIds.add("amzn1.echo-sdk-ams.app.d32becb3-600b-49d2-96ed-8cc2e7734ca8");
     }
 
+    /** SDK request pipeline for the speechlet */
+    private final SpeechletRequestStreamHandler pipeline;
+    /** startup primer, which also holds the startup timings */
+    private final SeedPrimer primer;
+    /** pre-serialized static responses, or NULL if they are turned off */
+    private final ResponseTemplates templates;
+    /** traffic capture log, or NULL if capture is off */
+    private final TrafficCapture capture;
+
+    /**
+     * This class is an output stream that counts the bytes written through it.
+     */
+    private static class CountingStream extends FilterOutputStream {
+        /** number of bytes written */
+        private int count;
+
+        /**
+         * Create a counting stream.
+         *
+         * @param out    underlying output stream
+         */
+        private CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+
+    /**
+     * Construct the handler.  Unless the "prime" setting is turned off, the container is primed
+     * before the first request arrives (see {@link SeedPrimer}).  Unless the "templates" setting is
+     * turned off, the static responses are pre-serialized (see {@link ResponseTemplates}).  If the
+     * "captureFile" setting is specified, the traffic is captured to it (see {@link TrafficCapture}).
+     * Unless the "warm" setting is turned off, the most popular SEED answers are loaded into the cache,
+     * waiting at most "warmTimeout" milliseconds (default 3000), and then kept fresh in the background
+     * (see {@link CacheWarmer}).
+     */
     public SeedQueryHandler() {
-        super(new SeedQuerySpeechlet(), supportedApplicationIds);
+        this(new SeedQuerySpeechlet(), true);
+    }
+
+    /**
+     * Construct a handler that gets its SEED data from a specific source.  This is used by tests and
+     * benchmarks to replace the SEED server with a stub, so the shared SEED back end is neither primed
+     * nor warmed, and constructing the handler never connects to the real SEED.
+     *
+     * @param seed    source of SEED data
+     */
+    public SeedQueryHandler(SeedSource seed) {
+        this(new SeedQuerySpeechlet(seed), false);
+    }
+
+    /**
+     * Construct a handler for a specific speechlet.
+     *
+     * @param speechlet    speechlet to process the requests
+     * @param live         TRUE if the speechlet uses the shared SEED back end
+     */
+    private SeedQueryHandler(SeedQuerySpeechlet speechlet, boolean live) {
+        this.pipeline = new SpeechletRequestStreamHandler(speechlet, supportedApplicationIds) {};
+        this.primer = new SeedPrimer(supportedApplicationIds);
+        this.primer.record("construct", LOAD_TIME);
+        if (SeedConfig.getBoolean("templates", true)) {
+            long start = System.nanoTime();
+            this.templates = new ResponseTemplates(speechlet, supportedApplicationIds);
+            this.primer.record("templates", start);
+        } else {
+            this.templates = null;
+        }
+        this.capture = TrafficCapture.open();
+        if (live && SeedConfig.getBoolean("prime", true)) {
+            this.primer.prime(SeedBackend.getInstance().getClient());
+        }
+        if (live && SeedConfig.getBoolean("warm", true)) {
+            long start = System.nanoTime();
+            CacheWarmer warmer = SeedBackend.getInstance().getWarmer();
+            warmer.warm(SeedConfig.getLong("warmTimeout", 3000));
+            warmer.start();
+            this.primer.record("warm", start);
+        }
+        log.info(this.primer.getReport());
+    }
+
+    /**
+     * @return a printable report of the startup timings
+     */
+    public String getStartupReport() {
+        return this.primer.getReport();
+    }
+
+    @Override
+    /** Stream request handler:  the request deadline is set from the Lambda context for the back end,
+     *  requests with static answers are answered from the pre-serialized templates, and the request
+     *  is captured if capture is on. */
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        Deadline.start(context);
+        long start = System.nanoTime();
+        RequestBuffers buffers = null;
+        CountingStream counter = null;
+        boolean loaded = false;
+        try {
+            InputStream request = input;
+            OutputStream out = output;
+            if (this.capture != null) {
+                IntentMetrics.resetBackend();
+                counter = new CountingStream(output);
+                out = counter;
+            }
+            if (this.templates != null || this.capture != null) {
+                buffers = RequestBuffers.get();
+                request = buffers.load(input);
+                loaded = true;
+            }
+            boolean answered = false;
+            if (this.templates != null) {
+                answered = this.templates.respond(buffers.requestBytes(), buffers.requestLength(), out);
+            }
+            if (! answered) {
+                this.pipeline.handleRequest(request, out, context);
+            }
+        } finally {
+            // Failed requests are captured too, since they are the ones most worth replaying.
+            if (this.capture != null && loaded) {
+                this.capture.record(buffers.requestBytes(), buffers.requestLength(), System.nanoTime() - start,
+                        IntentMetrics.getBackendNanos(), counter.count);
+            }
+            Deadline.clear();
+        }
+    }
+
+    /**
+     * @return a printable summary of the capture statistics
+     */
+    public String getCaptureStats() {
+        return (this.capture == null ? "capture=off" : this.capture.getStats());
+    }
+
+    /**
+     * @return a printable summary of the static response statistics
+     */
+    public String getTemplateStats() {
+        return (this.templates == null ? "templates=off" : this.templates.getStats());
     }
 
     @Override
-    /** Request handler: json in, json out */
+    /** Request handler: json in, json out.  The conversions use reusable per-thread UTF-8 buffers. */
     public String handleRequest(String input, Context context) {
         String retVal;
-        InputStream inStream = new ByteArrayInputStream(input.getBytes());
-        OutputStream outStream = new ByteArrayOutputStream();
+        RequestBuffers buffers = RequestBuffers.get();
         try {
-            this.handleRequest(inStream, outStream, context);
-            retVal = new String(outStream.toString());
-        } catch (IOException e) {
-            retVal = null;
+            this.handleRequest(buffers.encode(input), buffers.output(), context);
+            retVal = buffers.decode();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error processing request: {}", e.toString());
+            retVal = ERROR_RESPONSE;
+        } finally {
+            buffers.release();
         }
         return retVal;
     }
@@ -1,15 +1,18 @@
 package org.theseed.alexa;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.http.client.HttpResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
 import com.amazon.speech.speechlet.IntentRequest;
 import com.amazon.speech.speechlet.LaunchRequest;
 import com.amazon.speech.speechlet.Session;
@@ -19,68 +22,132 @@ import com.amazon.speech.speechlet.Speechlet;
 import com.amazon.speech.speechlet.SpeechletException;
 import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
 import com.amazon.speech.ui.SimpleCard;
 
 /**
- * This class intercepts intents and decides what to do with them.
+ * This class intercepts intents and decides what to do with them.  Each intent name is mapped to a
+ * handler in a table built when the speechlet is created, and each handler is wrapped so that its
+ * call counts and latencies are recorded (see {@link IntentMetrics}), unless the speechlet only
+ * answers synthetic requests.  An intent not in the table
+ * gets a polite spoken response instead of an error.  Only a sample of the intent requests are
+ * logged, controlled by the "logSample" setting (see {@link SeedConfig}).
+ *
+ * The last genome asked about and the answers already fetched for it are kept in the session (see
+ * {@link SessionState}), and the responses about a genome keep the session open, so that follow-up
+ * questions like "how many features does it have" can be answered without repeating the genome ID
+ * and, when the answer is already in the session, without querying the SEED again.  A genome ID the
+ * data source knows to be invalid (see {@link SeedSource#isKnownGenome(String)}) gets an immediate
+ * spoken answer without a query.
  */
 
 public class SeedQuerySpeechlet implements Speechlet {
     private static final Logger log = LoggerFactory.getLogger(SeedQuerySpeechlet.class);
 
-    private static final String SEED_URL = "http://bioseed.mcs.anl.gov/~parrello/SEEDtk/svr.cgi";
+    /** one intent request in this many is logged at INFO level (0 for none) */
+    private static final int LOG_SAMPLE = SeedConfig.getInt("logSample", 100);
+    /** number of intent requests, for log sampling */
+    private static final AtomicLong requestCounter = new AtomicLong();
+    /** welcome text */
+    private static final String WELCOME_TEXT = "Welcome to SEED.";
+    /** goodbye text */
+    private static final String GOODBYE_TEXT = "Goodbye";
+    /** prefix for the static response keys of glossary explanations */
+    private static final String TEXT_KEY = "TextIntent\t";
+    /** slot-name suffixes for the genomes in a multi-genome intent */
+    private static final String[] GENOME_LIST_SLOTS = new String[] { "A", "B", "C" };
+    /** map of follow-up detail names to SEED actions */
+    private static final Map<String, String> DETAIL_ACTIONS = new HashMap<String, String>();
+    /** reprompt for responses that accept a follow-up question */
+    private static final String FOLLOW_UP_TEXT = "You can ask about its name, contigs, features, or subsystems, or say stop.";
+    /** response to a genome ID that is not in the SEED */
+    private static final String UNKNOWN_GENOME_TEXT = "I am sorry, but I don't know that genome.";
+    /** help text */
+    private static final String HELP_TEXT = "To get genome data, use the genome ID, for example 'ask the SEED about 83333.1'. To get counts, use the table name, for example 'ask the SEED how many genomes'.";
+    /** response to an unrecognized intent */
+    private static final String UNKNOWN_TEXT = "I am sorry, but I don't know how to do that. " + HELP_TEXT;
+    /** start of the answer given when a SEED query fails unexpectedly */
+    static final String FATAL_ERROR_TEXT = "A fatal error of type ";
+
+    static {
+        DETAIL_ACTIONS.put("name", "GenomeName");
+        DETAIL_ACTIONS.put("contig", "GenomeContigs");
+        DETAIL_ACTIONS.put("contigs", "GenomeContigs");
+        DETAIL_ACTIONS.put("feature", "GenomeFeatures");
+        DETAIL_ACTIONS.put("features", "GenomeFeatures");
+        DETAIL_ACTIONS.put("gene", "GenomeFeatures");
+        DETAIL_ACTIONS.put("genes", "GenomeFeatures");
+        DETAIL_ACTIONS.put("subsystem", "GenomeSubsystems");
+        DETAIL_ACTIONS.put("subsystems", "GenomeSubsystems");
+        DETAIL_ACTIONS.put("summary", "GenomeIntent");
+    }
+
+    /** source of SEED data */
+    private final SeedSource seed;
+    /** TRUE if the intent calls are recorded in the intent metrics */
+    private final boolean recording;
+    /** glossary of terms */
+    private Glossary glossary;
+    /** genome summary builder */
+    private GenomeSummarizer summarizer;
+    /** map of intent names to handlers */
+    private Map<String, IntentHandler> intents;
+    /** handler for intents not in the table */
+    private IntentHandler unknownIntent;
 
     /** Default constructor. */
     public SeedQuerySpeechlet() {
+        this(SeedBackend.getInstance());
+    }
+
+    /**
+     * Construct a speechlet that gets its data from a specific source.
+     *
+     * @param seed    source of SEED data
+     */
+    public SeedQuerySpeechlet(SeedSource seed) {
+        this(seed, true);
+    }
+
+    /**
+     * Construct a speechlet that gets its data from a specific source and optionally leaves the
+     * intent metrics alone.  This is used for synthetic requests (see {@link SeedPrimer}), which
+     * must not show up as traffic.
+     *
+     * @param seed         source of SEED data
+     * @param recording    TRUE if the intent calls should be recorded in the intent metrics
+     */
+    SeedQuerySpeechlet(SeedSource seed, boolean recording) {
+        this.seed = seed;
+        this.recording = recording;
         initializeComponents();
     }
 
     @Override
     public void onSessionStarted(final SessionStartedRequest request, final Session session) throws SpeechletException {
-        log.info("onSessionStarted requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
-
-        // TODO initialize session
+        log.debug("onSessionStarted requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
+        // A new session has no remembered genome.
+        session.removeAttribute(SessionState.ATTRIBUTE);
     }
 
     @Override
     public SpeechletResponse onLaunch(final LaunchRequest request, final Session session) throws SpeechletException {
-        log.info("onLaunch requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
-        return getBasicSpeechletResponse("Welcome to SEED.");
+        log.debug("onLaunch requestId={}, sessionId={}", request.getRequestId(), session.getSessionId());
+        return getBasicSpeechletResponse(WELCOME_TEXT);
     }
 
     @Override
     public SpeechletResponse onIntent(IntentRequest request, Session session) throws SpeechletException {
         Intent intent = request.getIntent();
-        log.info("onIntent requestId={}, sessionId={}, intent={}", request.getRequestId(), session.getSessionId(),
-                intent.getName());
-
-        if ("CountIntent".equals(intent.getName())) {
-            String parameter = intent.getSlot("ObjectType").getValue();
-            log.info("count intent, object = {}", parameter);
-            return getSeedData("CountIntent", parameter);
-        } else if ("TextIntent".equals(intent.getName())) {
-            String term = intent.getSlot("Term").getValue();
-            log.info("term intent, type = {}", term);
-            return getExplanation(term);
-        } else if ("GenomeIntent".equals(intent.getName())) {
-            String parameter = intent.getSlot("TaxonId").getValue();
-            String version = intent.getSlot("Version").getValue();
-            parameter += "." + version;
-            return getSeedData("GenomeIntent", parameter);
-        } else if ("AMAZON.HelpIntent".equals(intent.getName())) {
-            String helpText = "To get genome data, use the genome ID, for example 'ask the SEED about 83333.1'. To get counts, use the table name, for example 'ask the SEED how many genomes'.";
-            return getBasicSpeechletResponse(helpText);
-
-        } else if ("AMAZON.CancelIntent".equals(intent.getName())) {
-            return getExitIntentResponse(intent, session);
-
-        } else if ("AMAZON.StopIntent".equals(intent.getName())) {
-            return getExitIntentResponse(intent, session);
-
-        } else {
-            throw new IllegalArgumentException("Unrecognized intent: " + intent.getName());
+        if (log.isDebugEnabled() || (LOG_SAMPLE > 0 && requestCounter.incrementAndGet() % LOG_SAMPLE == 0)) {
+            log.info("onIntent requestId={}, sessionId={}, intent={}", request.getRequestId(), session.getSessionId(),
+                    intent.getName());
         }
-
+        IntentHandler handler = this.intents.get(intent.getName());
+        if (handler == null) {
+            handler = this.unknownIntent;
+        }
+        return handler.handle(intent, session);
     }
 
     @Override
@@ -93,7 +160,48 @@ public class SeedQuerySpeechlet implements Speechlet {
      * Initializes the instance components.
      */
     private void initializeComponents() {
-        // initialization common to all constructors
+        // Load the glossary now, so the first TextIntent does not pay for it.
+        this.glossary = Glossary.getInstance();
+        this.summarizer = new GenomeSummarizer(this.seed);
+        // Build the intent table.
+        this.intents = new HashMap<String, IntentHandler>();
+        register("CountIntent", (intent, session) -> getSeedData("CountIntent", intent.getSlot("ObjectType").getValue()));
+        register("TextIntent", (intent, session) -> getExplanation(intent.getSlot("Term").getValue()));
+        register("GenomeIntent", (intent, session) -> getGenomeData(session, "GenomeIntent",
+                intent.getSlot("TaxonId").getValue() + "." + intent.getSlot("Version").getValue()));
+        register("GenomeFollowUpIntent", this::getFollowUp);
+        register("GenomeListIntent", (intent, session) -> getGenomeList(intent));
+        register("GenomeSummaryIntent", (intent, session) -> getGenomeSummary(session,
+                intent.getSlot("TaxonId").getValue() + "." + intent.getSlot("Version").getValue()));
+        register("AMAZON.HelpIntent", (intent, session) -> getBasicSpeechletResponse(HELP_TEXT));
+        register("AMAZON.CancelIntent", this::getExitIntentResponse);
+        register("AMAZON.StopIntent", this::getExitIntentResponse);
+        IntentHandler unknown = (intent, session) -> {
+            log.warn("Unrecognized intent: {}", intent.getName());
+            return getBasicSpeechletResponse(UNKNOWN_TEXT);
+        };
+        this.unknownIntent = (this.recording ? instrument("Unknown", unknown) : unknown);
+    }
+
+    /**
+     * Add an intent handler to the intent table.
+     *
+     * @param name       name of the intent
+     * @param handler    handler for the intent
+     */
+    private void register(String name, IntentHandler handler) {
+        this.intents.put(name, (this.recording ? instrument(name, handler) : handler));
+    }
+
+    /**
+     * @return an intent handler wrapped so that its performance is recorded
+     *
+     * @param name       name under which to record the performance
+     * @param handler    handler to wrap
+     */
+    private static IntentHandler instrument(String name, IntentHandler handler) {
+        final IntentMetrics metrics = IntentMetrics.get(name);
+        return (intent, session) -> metrics.invoke(handler, intent, session);
     }
 
     /**
@@ -104,10 +212,23 @@ public class SeedQuerySpeechlet implements Speechlet {
      * @return a tell Speechlet response for a speech with a card.
      */
     private SpeechletResponse getTellSpeechletResponse(String speechText) {
+        return getTellSpeechletResponse(speechText, speechText);
+    }
+
+    /**
+     * Returns a tell Speechlet response for a speech with a card that has different text.
+     *
+     * @param speechText
+     *            Text for speech output
+     * @param cardText
+     *            Text for the card
+     * @return a tell Speechlet response for a speech with a card.
+     */
+    private SpeechletResponse getTellSpeechletResponse(String speechText, String cardText) {
         // Create the Simple card content.
         SimpleCard card = new SimpleCard();
         card.setTitle("SEED Information");
-        card.setContent(speechText);
+        card.setContent(cardText);
 
         // Create the plain text output.
         PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
@@ -116,6 +237,31 @@ public class SeedQuerySpeechlet implements Speechlet {
         return SpeechletResponse.newTellResponse(speech, card);
     }
 
+    /**
+     * Returns an ask Speechlet response that keeps the session open for a follow-up question.
+     *
+     * @param speechText
+     *            Text for speech output
+     * @param cardText
+     *            Text for the card
+     * @return an ask Speechlet response for a speech with a card and the follow-up reprompt.
+     */
+    private SpeechletResponse getFollowUpSpeechletResponse(String speechText, String cardText) {
+        SimpleCard card = new SimpleCard();
+        card.setTitle("SEED Information");
+        card.setContent(cardText);
+
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(speechText);
+
+        PlainTextOutputSpeech repromptSpeech = new PlainTextOutputSpeech();
+        repromptSpeech.setText(FOLLOW_UP_TEXT);
+        Reprompt reprompt = new Reprompt();
+        reprompt.setOutputSpeech(repromptSpeech);
+
+        return SpeechletResponse.newAskResponse(speech, reprompt, card);
+    }
+
     /**
      * Returns a tell Speechlet response for a speech with no card.
      *
@@ -136,164 +282,158 @@ public class SeedQuerySpeechlet implements Speechlet {
     /** Get data from the SEED */
     private SpeechletResponse getSeedData(String action, String parameter) {
         String retVal;
+        boolean failed = true;
+        long start = System.nanoTime();
         try {
-            // Format the parameters.
-            StringBuilder postData = new StringBuilder();
-            postData.append(URLEncoder.encode("action", "UTF-8"));
-            postData.append("=");
-            postData.append(URLEncoder.encode(action, "UTF-8"));
-            postData.append(";");
-            postData.append(URLEncoder.encode("parameter", "UTF-8"));
-            postData.append("=");
-            postData.append(URLEncoder.encode(parameter, "UTF-8"));
-            // Connect to the URL.
-            URL seedUrl = new URL(SEED_URL + "?" + postData.toString());
-            HttpURLConnection connection = (HttpURLConnection) seedUrl.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                retVal = "Fatal internet error " + Integer.toString(responseCode);
+            retVal = this.seed.getData(action, parameter);
+            failed = false;
+        } catch (Exception e) {
+            retVal = describeError(e);
+        }
+        IntentMetrics.recordBackend(System.nanoTime() - start, failed);
+
+        return getTellSpeechletResponse(retVal);
+    }
+
+    /**
+     * Get data about a genome, using the answer in the session if there is one, and remember the genome
+     * and the answer in the session.
+     */
+    private SpeechletResponse getGenomeData(Session session, String action, String genomeId) {
+        SessionState state = SessionState.load(session);
+        SpeechletResponse retVal;
+        String answer = (genomeId.equals(state.getGenomeId()) ? state.getFact(action) : null);
+        if (answer != null) {
+            retVal = getFollowUpSpeechletResponse(answer, answer);
+        } else if (! this.seed.isKnownGenome(genomeId)) {
+            retVal = getTellSpeechletResponse(UNKNOWN_GENOME_TEXT);
+        } else {
+            state.setGenomeId(genomeId);
+            boolean failed = true;
+            long start = System.nanoTime();
+            try {
+                answer = this.seed.getData(action, genomeId);
+                failed = false;
+            } catch (Exception e) {
+                answer = describeError(e);
+            }
+            IntentMetrics.recordBackend(System.nanoTime() - start, failed);
+            if (failed) {
+                retVal = getTellSpeechletResponse(answer);
             } else {
-                BufferedReader in = new BufferedReader(new InputStreamReader(
-                        connection.getInputStream()));
-                retVal = in.readLine();
-                if (retVal == null) {
-                    retVal = "No further information.";
+                state.putFact(action, answer);
+                retVal = getFollowUpSpeechletResponse(answer, answer);
+            }
+            state.save(session);
+        }
+        return retVal;
+    }
+
+    /** Answer a follow-up question about the genome remembered in the session. */
+    private SpeechletResponse getFollowUp(Intent intent, Session session) {
+        Slot detail = intent.getSlot("Detail");
+        String action = (detail == null || detail.getValue() == null ? null
+                : DETAIL_ACTIONS.get(detail.getValue().toLowerCase()));
+        String genomeId = SessionState.load(session).getGenomeId();
+        SpeechletResponse retVal;
+        if (action == null) {
+            retVal = getBasicSpeechletResponse("I am sorry, but I didn't understand your request. " + FOLLOW_UP_TEXT);
+        } else if (genomeId == null) {
+            retVal = getBasicSpeechletResponse("I am sorry, but I don't know which genome you mean. " + HELP_TEXT);
+        } else {
+            retVal = getGenomeData(session, action, genomeId);
+        }
+        return retVal;
+    }
+
+    /** Get data from the SEED for all the genomes in a multi-genome intent, using a single batch query. */
+    private SpeechletResponse getGenomeList(Intent intent) {
+        List<String> genomes = new ArrayList<String>(GENOME_LIST_SLOTS.length);
+        for (String suffix : GENOME_LIST_SLOTS) {
+            Slot taxon = intent.getSlot("TaxonId" + suffix);
+            Slot version = intent.getSlot("Version" + suffix);
+            if (taxon != null && taxon.getValue() != null && version != null && version.getValue() != null) {
+                genomes.add(taxon.getValue() + "." + version.getValue());
+            }
+        }
+        // Only the genomes that may be in the SEED are queried.
+        List<String> known = new ArrayList<String>(genomes.size());
+        for (String genome : genomes) {
+            if (this.seed.isKnownGenome(genome)) {
+                known.add(genome);
+            }
+        }
+        String speech;
+        String card;
+        if (genomes.isEmpty()) {
+            speech = "I am sorry, but I didn't understand your request.";
+            card = speech;
+        } else {
+            boolean failed = true;
+            long start = System.nanoTime();
+            try {
+                Map<String, String> found = (known.isEmpty() ? Collections.<String, String>emptyMap()
+                        : this.seed.getBatch("GenomeIntent", known));
+                List<String> answers = new ArrayList<String>(genomes.size());
+                for (String genome : genomes) {
+                    String answer = found.get(genome);
+                    answers.add(answer != null ? answer : "I don't know genome " + genome + ".");
                 }
+                speech = String.join(" ", answers);
+                card = String.join("\n", answers);
+                failed = false;
+            } catch (Exception e) {
+                speech = describeError(e);
+                card = speech;
             }
-        } catch (Exception e) {
+            IntentMetrics.recordBackend(System.nanoTime() - start, failed);
+        }
+        return getTellSpeechletResponse(speech, card);
+    }
+
+    /** Describe a SEED error to the user. */
+    private static String describeError(Exception e) {
+        String retVal;
+        if (e instanceof SeedUnavailableException || e instanceof HttpResponseException) {
+            retVal = e.getMessage();
+        } else {
             log.error(e.getMessage());
-            retVal = "A fatal error of type " + e.getClass() + " occurred.";
+            retVal = FATAL_ERROR_TEXT + e.getClass() + " occurred.";
         }
+        return retVal;
+    }
 
-        return getTellSpeechletResponse(retVal);
+    /** Summarize a genome from several SEED queries made in parallel. */
+    private SpeechletResponse getGenomeSummary(Session session, String genomeId) {
+        SessionState state = SessionState.load(session);
+        List<String> parts = null;
+        if (genomeId.equals(state.getGenomeId()) || this.seed.isKnownGenome(genomeId)) {
+            state.setGenomeId(genomeId);
+            long start = System.nanoTime();
+            parts = this.summarizer.summarize(genomeId, state.getFacts());
+            IntentMetrics.recordBackend(System.nanoTime() - start, parts.isEmpty());
+            state.save(session);
+        }
+        SpeechletResponse retVal;
+        if (parts == null) {
+            retVal = getTellSpeechletResponse(UNKNOWN_GENOME_TEXT);
+        } else if (parts.isEmpty()) {
+            retVal = getTellSpeechletResponse("I am sorry, but I could not find any information about genome "
+                    + genomeId + " in time.");
+        } else {
+            retVal = getFollowUpSpeechletResponse(String.join(" ", parts), String.join("\n", parts));
+        }
+        return retVal;
     }
 
+    /** Explain a term from the glossary. */
     private SpeechletResponse getExplanation(String term) {
-        String retVal = "";
+        String retVal;
         if (term == null) {
             retVal = "I am sorry, but I didn't understand your request.";
         } else {
-            switch (term) {
-            case "protein" :
-            case "proteins" :
-                retVal = "A protein is a large molecule made up mostly of carbon, hydrogen, oxygen, and nitrogen. " +
-                         "Proteins are formed by putting smaller molecules called amino acids together in a long " +
-                         "chain which folds itself into a complicated nest of curls and spirals. The amino acids " +
-                         "in these curls and spirals trigger chemical reactions in a cell. Every single thing " +
-                         "that happens inside a living cell is determined by the proteins formed from the cell's " +
-                         "DNA.";
-                break;
-            case "amino acid" :
-            case "acid" :
-            case "amino acids" :
-            case "acids" :
-                retVal = "An amino acid is a small molecule that forms part of a protein. Every known protein is " +
-                        "a long sequence of amino acids. There are 22 known amino acids, of which 20 are used by " +
-                        "most life forms. Phenylalanine, a common dietary supplement, is an amino acid. " +
-                        "Your body knows how to make 11 of the amino acids, but you have to get the other 9 from " +
-                        "the food you eat and the liquids you drink.";
-                break;
-            case "bacteria" :
-            case "bacterium" :
-                retVal = "Bacteria are simple, single-celled creatures that live everywhere and in everything. " +
-                         "Unlike the cells in large animals and plants, that contain many different parts, a " +
-                         "bacterium is simply a bag of chemicals inside a thick membrane called the cell wall. " +
-                         "Bacteria are the cause of many terrible diseases, such as tuberculosis, plague, and " +
-                         "anthrax. But most bacteria are harmless. The bacteria in your stomach help you digest " +
-                         "plant and animal tissue. The bacteria in a baby's milk protect the baby from disorders " +
-                         "such as allergies and autism. In your body, there are 10 bacterial cells " +
-                         "for every human cell. The human cells, however, are much larger, anywhere from 100 " +
-                         "to 1000 times the volume of a typical bacterium.";
-                break;
-            case "archaea" :
-                retVal = "Archaea are simple, single-celled creatures known for their ability to live in extreme " +
-                         "environments like volcano springs, glaciers, and acid pools. Some of them even breathe " +
-                         "methane instead of carbon dioxide or oxygen. The chemistry inside an archael cell is " +
-                         "therefore very different from the chemistry inside a bacterium.  Not much is known about " +
-                         "archaea because most of them cannot be cultured in a laboratory for study.";
-                break;
-            case "eukaryote" :
-            case "eukaryotes" :
-            case "eukaryota" :
-            case "eukarya" :
-                retVal = "Eukaryotes are complex organisms in which the cell is divided into tiny biological machines " +
-                         "separated by membranes. These machines include the nucleus, the cytoskeleton, mitochondria, " +
-                         "and chloroplasts. All multi-cellular life forms are eukaryotes, but some are single-celled, " +
-                         "such as the plasmodium, which is the parasite that causes malaria. A eukaryote has multiple " +
-                         "strings of DNA instead of a single circular chain like bacteria and archaea. This allows " +
-                         "eukaryotes to evolve much faster, which is how they became so big and complicated. Life has " +
-                         "existed on Earth for approximately 4 billion years, but eukaryotes have been around for only " +
-                         "1800 million years. Yet in that time, they have come to dominate the surface of the planet.";
-                break;
-            case "DNA" :
-            case "deoxyribonucleic acid" :
-            case "nucleic acid" :
-                retVal = "DNA, or deoxyribonucleic acid, is a gigantic molecule consisting of two intertwined helixes. " +
-                         "Each helix is a chain of small molecules called nucleotides or bases. The nucleotides match up " +
-                         "with each other, so if you lose one helix, you can rebuild it from the other one. DNA is used " +
-                         "to create proteins from amino acids, and these proteins control all the chemical reactions in " +
-                         "living cells.";
-                break;
-            case "RNA" :
-            case "ribonucleic acid" :
-                retVal = "RNA, or ribonucleic acid, is a molecule formed from DNA. There are several types of RNA. Messenger RNA " +
-                         "contains the codons from DNA, and describes a protein. Transfer RNA collects the amino acids from the " +
-                         "cell and connects them to the messenger RNA to create the protein. Ribosomal RNA turns into the ribosome " +
-                         "chemicals than create the messenger RNA from the DNA. Each species has its own slightly different version of " +
-                         "RNA, and RNA is used in modern bio-informatics to chart the course of evolution.";
-                break;
-            case "bio informatics" :
-            case "bio infomatics" :
-            case "bioinformatics" :
-            case "bioinfomatics" :
-                retVal = "Bio-informatics is the use of computers to study DNA sequences so that we can learn how life works, how to " +
-                        "cure and prevent diseases and genetic disorders, how to help people live longer, and how the various parts of " +
-                        "earth's ecology fit together. ";
-                break;
-            case "genome" :
-            case "genomes" :
-                retVal = "A genome is the DNA of a single organism stored in a computer. When we sequence DNA to create a genome, " +
-                        "we don't always get everything, so the genome comes back in multiple pieces called contigs. " +
-                        "The size of the genome is measured in millions of base pairs, or megabases.";
-                break;
-            case "contig" :
-            case "contigs" :
-                retVal = "A contig is a contiguous sequence of DNA for a genome. If we are missing a lot of the DNA for a genome, " +
-                        "then there will be a lot of short contigs. So the fewer contigs a genome has, the more confident we are " +
-                        "that we know everything we need to know about the genome.";
-                break;
-            case "feature" :
-            case "features" :
-                retVal = "A feature is a region of DNA in a genome that performs a function. Most features create proteins. We call " +
-                        "those genes. Some features create RNA, some switch other features on and off. Some represent groups of " +
-                        "other features that work together.";
-                break;
-            case "function" :
-            case "functions" :
-                retVal = "A function is a description of what a protein does. Most proteins only do one thing, but some do " +
-                        "two or three. Each thing the protein does is called a role. Each role represents a chemical " +
-                        "reaction that happens in the cell when the protein is present.";
-                break;
-            case "role" :
-            case "roles" :
-                retVal = "A role is a description of a group of chemical reactions caused by a protein's presence in the cell. " +
-                        "If we know all the roles in the genome for a simple life form like a bacteria or archaea, we can create " +
-                        "giant computer models of all the chemical reactions. These models enable us to simulate the life of the " +
-                        "creature so we can guess what kills it, what helps it live, and what might make it decide to get " +
-                        "angry and attack.";
-                break;
-            case "subsystem" :
-            case "subsystems" :
-            case "sub systems" :
-            case "sub system" :
-            case "subsistence" :
-                retVal = "A subsystem is a group of roles that work together to perform a major process, such as building a " +
-                        "cell wall, replicating the cell, converting sugar into energy, or protecting the cell from toxins." +
-                        "In bio-informatics, susystems help us to figure out the functions of proteins.";
-                break;
-            default:
+            retVal = this.glossary.explain(term);
+            if (retVal == null) {
                 retVal = "I am sorry. I don't understand the term " + term + ".";
             }
         }
@@ -302,7 +442,53 @@ public class SeedQuerySpeechlet implements Speechlet {
     }
 
     private SpeechletResponse getExitIntentResponse(Intent intent, Session session) {
-        return getBasicSpeechletResponse("Goodbye");
+        return getBasicSpeechletResponse(GOODBYE_TEXT);
+    }
+
+    /**
+     * @return a map of keys to the responses that never change (see {@link ResponseTemplates})
+     */
+    public Map<String, SpeechletResponse> getStaticResponses() {
+        Map<String, SpeechletResponse> retVal = new HashMap<String, SpeechletResponse>();
+        retVal.put("LaunchRequest", getBasicSpeechletResponse(WELCOME_TEXT));
+        retVal.put("AMAZON.HelpIntent", getBasicSpeechletResponse(HELP_TEXT));
+        retVal.put("AMAZON.CancelIntent", getBasicSpeechletResponse(GOODBYE_TEXT));
+        retVal.put("AMAZON.StopIntent", getBasicSpeechletResponse(GOODBYE_TEXT));
+        for (String explanation : this.glossary.getExplanations()) {
+            retVal.put(TEXT_KEY + explanation, getTellSpeechletResponse(explanation));
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the key of the static response for a request, or NULL if the response is not static
+     *
+     * @param type      request type
+     * @param intent    intent name, or NULL if this is not an intent request
+     * @param term      value of the term slot, or NULL if there is none
+     */
+    public String getStaticKey(String type, String intent, String term) {
+        String retVal = null;
+        if ("LaunchRequest".equals(type)) {
+            retVal = type;
+        } else if ("IntentRequest".equals(type) && intent != null) {
+            switch (intent) {
+            case "AMAZON.HelpIntent" :
+            case "AMAZON.CancelIntent" :
+            case "AMAZON.StopIntent" :
+                retVal = intent;
+                break;
+            case "TextIntent" :
+                String explanation = (term == null ? null : this.glossary.explain(term));
+                if (explanation != null) {
+                    retVal = TEXT_KEY + explanation;
+                }
+                break;
+            default :
+                retVal = null;
+            }
+        }
+        return retVal;
     }
 
 }
@@ -0,0 +1,93 @@
+package org.theseed.alexa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class parses the body of a SEED server response.  There are two formats.
+ *
+ *  one-line    the answer is the first line of the body; anything after it is ignored
+ *  fields      each line is a field name and a value separated by a tab, and a blank line or the
+ *              end of the body ends the answer
+ *
+ * The fields format is requested by adding "format=fields" to the query (see
+ * {@link SeedClient#getFields(String, String, Collection)}).  A server that does not support it
+ * answers in the one-line format, and such an answer is returned as a single field named
+ * {@link #TEXT}.
+ *
+ * The body is always decoded as UTF-8, and it is read as a stream:  parsing stops as soon as the
+ * caller has what it needs, without reading the rest of the body.
+ */
+public class SeedResponse {
+
+    /** name of the field holding a one-line answer */
+    public static final String TEXT = "text";
+
+    /** answer to use when the body is empty */
+    public static final String NO_INFO = "No further information.";
+
+    /**
+     * @return the first line of a response body
+     *
+     * @param in    stream containing the response body
+     *
+     * @throws IOException if there is a read error
+     */
+    public static String readLine(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 512);
+        String retVal = reader.readLine();
+        if (retVal == null) {
+            retVal = NO_INFO;
+        }
+        return retVal;
+    }
+
+    /**
+     * Parse a response in the fields format.  Reading stops as soon as all the wanted fields have
+     * been found.
+     *
+     * @param in        stream containing the response body
+     * @param wanted    names of the fields wanted, or NULL to read them all
+     *
+     * @return a map of field names to values; a one-line answer is returned as the {@link #TEXT} field
+     *
+     * @throws IOException if there is a read error
+     */
+    public static Map<String, String> readFields(InputStream in, Collection<String> wanted) throws IOException {
+        Map<String, String> retVal = new HashMap<String, String>();
+        Set<String> missing = (wanted == null ? null : new HashSet<String>(wanted));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 512);
+        String line = reader.readLine();
+        if (line == null) {
+            retVal.put(TEXT, NO_INFO);
+        } else if (line.indexOf('\t') < 0) {
+            // This is an old-style one-line answer.
+            retVal.put(TEXT, line);
+        } else {
+            boolean done = false;
+            while (! done && line != null && ! line.isEmpty()) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    String name = line.substring(0, tab);
+                    if (missing == null || missing.remove(name)) {
+                        retVal.put(name, line.substring(tab + 1));
+                    }
+                }
+                done = (missing != null && missing.isEmpty());
+                if (! done) {
+                    line = reader.readLine();
+                }
+            }
+        }
+        return retVal;
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.theseed.alexa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class runs the skill as a standalone HTTP server instead of a Lambda function.  Skill requests
+ * are POSTed to "/", and the JSON response is returned in the body.  "/health" returns the server
+ * status and "/metrics" returns the request counters, the SEED back end statistics (if the shared back
+ * end is in use) and the per-intent metrics (see {@link IntentMetrics}).
+ *
+ * Each request runs on its own thread.  If the JVM supports virtual threads they are used, so that
+ * thousands of requests can wait on the SEED at once; otherwise a cached thread pool is used.  The
+ * number of requests in flight is limited, and requests beyond the limit get a 503 response.  Alexa
+ * requires HTTPS endpoints, so the server is expected to sit behind a TLS-terminating proxy.
+ *
+ * Outside Lambda, nothing stops anyone from posting requests to the server, so each skill request
+ * must carry a valid Alexa signature and a recent timestamp.  These are checked with the SDK's own
+ * verifiers, as its servlet does, and a request that fails either check gets a 400 response.
+ *
+ * The following settings (see {@link SeedConfig}) control the server.
+ *
+ *  serverPort          port to listen on (default 8080)
+ *  serverMaxInFlight   maximum number of requests in progress (default 1000)
+ *  serverShutdownWait  seconds to wait for requests to finish during shutdown (default 10)
+ *  serverVerify        TRUE to check the request signatures and timestamps (default TRUE); turn
+ *                      this off only for local testing
+ *  serverTolerance     maximum age of a request in seconds (default 150)
+ */
+public class SeedServer {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedServer.class);
+
+    /** handler for skill requests */
+    private final RequestStreamHandler handler;
+    /** underlying HTTP server */
+    private final HttpServer server;
+    /** executor for request threads */
+    private final ExecutorService executor;
+    /** permits for requests in flight */
+    private final Semaphore permits;
+    /** maximum number of requests in flight */
+    private final int maxInFlight;
+    /** checker for request timestamps, or NULL if requests are not verified */
+    private final TimestampSpeechletRequestVerifier timestamps;
+    /** TRUE if the server is shutting down */
+    private volatile boolean stopping;
+    /** number of skill requests processed */
+    private final AtomicLong requestCount;
+    /** number of skill requests rejected because of the in-flight limit */
+    private final AtomicLong rejectCount;
+    /** number of skill requests that failed */
+    private final AtomicLong errorCount;
+    /** number of skill requests that failed the signature or timestamp check */
+    private final AtomicLong invalidCount;
+
+    /**
+     * Construct a skill server.
+     *
+     * @param handler        handler for skill requests
+     * @param port           port to listen on (0 to pick any free port)
+     * @param maxInFlight    maximum number of requests in progress
+     * @param verifying      TRUE to check the request signatures and timestamps
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public SeedServer(RequestStreamHandler handler, int port, int maxInFlight, boolean verifying) throws IOException {
+        this.handler = handler;
+        this.maxInFlight = maxInFlight;
+        this.timestamps = (! verifying ? null
+                : new TimestampSpeechletRequestVerifier(SeedConfig.getLong("serverTolerance", 150), TimeUnit.SECONDS));
+        this.permits = new Semaphore(maxInFlight);
+        this.requestCount = new AtomicLong();
+        this.rejectCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.invalidCount = new AtomicLong();
+        this.executor = SeedUtils.createExecutor("SeedServer");
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/health", this::processHealth);
+        this.server.createContext("/metrics", this::processMetrics);
+        this.server.createContext("/", this::processSkill);
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        this.server.start();
+        log.info("SEED skill server listening on port {}.", this.getPort());
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Shut down the server gracefully.  New requests are refused, and the requests in progress are
+     * given a limited time to finish.
+     *
+     * @param waitSeconds    maximum number of seconds to wait for requests in progress
+     */
+    public void shutdown(int waitSeconds) {
+        log.info("Shutting down SEED skill server.");
+        this.stopping = true;
+        this.server.stop(waitSeconds);
+        this.executor.shutdown();
+        try {
+            if (! this.executor.awaitTermination(waitSeconds, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("SEED skill server stopped.  {}", this.getMetrics().replace('\n', ' '));
+    }
+
+    /**
+     * Process a skill request.
+     *
+     * @param exchange    HTTP request/response exchange
+     *
+     * @throws IOException if there is a communication error
+     */
+    private void processSkill(HttpExchange exchange) throws IOException {
+        if (! "POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, "Skill requests must be POSTed.");
+        } else if (this.stopping) {
+            send(exchange, 503, "Server is shutting down.");
+        } else if (! this.permits.tryAcquire()) {
+            this.rejectCount.incrementAndGet();
+            send(exchange, 503, "Server is busy.");
+        } else {
+            try {
+                this.requestCount.incrementAndGet();
+                byte[] request = readAll(exchange.getRequestBody());
+                ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
+                boolean valid = this.isAuthentic(exchange, request);
+                if (valid) {
+                    try {
+                        this.handler.handleRequest(new ByteArrayInputStream(request), response, null);
+                    } catch (IOException | RuntimeException e) {
+                        this.errorCount.incrementAndGet();
+                        log.error("Error processing skill request: {}", e.toString());
+                        response = null;
+                    }
+                }
+                if (! valid) {
+                    this.invalidCount.incrementAndGet();
+                    send(exchange, 400, "Invalid request.");
+                } else if (response == null) {
+                    send(exchange, 500, "Error processing request.");
+                } else {
+                    exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+                    exchange.sendResponseHeaders(200, response.size());
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        response.writeTo(out);
+                    }
+                }
+            } finally {
+                this.permits.release();
+            }
+        }
+    }
+
+    /**
+     * @return TRUE if a skill request has a valid Alexa signature and a recent timestamp, or if
+     *         requests are not being verified
+     *
+     * @param exchange    HTTP request/response exchange
+     * @param request     body of the request
+     */
+    private boolean isAuthentic(HttpExchange exchange, byte[] request) {
+        boolean retVal = true;
+        if (this.timestamps != null) {
+            try {
+                SpeechletRequestSignatureVerifier.checkRequestSignature(request,
+                        exchange.getRequestHeaders().getFirst(Sdk.SIGNATURE_REQUEST_HEADER),
+                        exchange.getRequestHeaders().getFirst(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+                SpeechletRequestEnvelope<?> envelope = SpeechletRequestEnvelope.fromJson(request);
+                retVal = this.timestamps.verify(envelope.getRequest(), envelope.getSession());
+                if (! retVal) {
+                    log.warn("Skill request rejected:  timestamp is too old.");
+                }
+            } catch (SecurityException | IOException e) {
+                log.warn("Skill request rejected:  {}", e.getMessage());
+                retVal = false;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Process a health check.
+     *
+     * @param exchange    HTTP request/response exchange
+     *
+     * @throws IOException if there is a communication error
+     */
+    private void processHealth(HttpExchange exchange) throws IOException {
+        if (this.stopping) {
+            send(exchange, 503, "STOPPING");
+        } else {
+            send(exchange, 200, "OK");
+        }
+    }
+
+    /**
+     * Process a metrics request.
+     *
+     * @param exchange    HTTP request/response exchange
+     *
+     * @throws IOException if there is a communication error
+     */
+    private void processMetrics(HttpExchange exchange) throws IOException {
+        send(exchange, 200, this.getMetrics());
+    }
+
+    /**
+     * @return the server metrics, one "name value" pair per line
+     */
+    public String getMetrics() {
+        StringBuilder retVal = new StringBuilder(200);
+        retVal.append("requests ").append(this.requestCount.get()).append('\n');
+        retVal.append("rejected ").append(this.rejectCount.get()).append('\n');
+        retVal.append("errors ").append(this.errorCount.get()).append('\n');
+        retVal.append("invalid ").append(this.invalidCount.get()).append('\n');
+        retVal.append("inFlight ").append(this.maxInFlight - this.permits.availablePermits()).append('\n');
+        retVal.append("maxInFlight ").append(this.maxInFlight).append('\n');
+        // Asking for the back end statistics must not create a back end the handler never used.
+        SeedBackend backend = SeedBackend.getExistingInstance();
+        if (backend != null) {
+            retVal.append("backend ").append(backend.getStats()).append('\n');
+        }
+        for (String line : IntentMetrics.getLines()) {
+            retVal.append(line).append('\n');
+        }
+        return retVal.toString();
+    }
+
+    /**
+     * Send a plain-text response.
+     *
+     * @param exchange    HTTP request/response exchange
+     * @param status      HTTP status code
+     * @param text        response text
+     *
+     * @throws IOException if there is a communication error
+     */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return all the bytes in an input stream
+     *
+     * @param in    input stream to read
+     *
+     * @throws IOException if there is a read error
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream retVal = new ByteArrayOutputStream(2048);
+        byte[] buffer = new byte[2048];
+        int n = in.read(buffer);
+        while (n >= 0) {
+            retVal.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        return retVal.toByteArray();
+    }
+
+    /**
+     * Run the skill server until the JVM is terminated.
+     *
+     * @param args    optional port number (overrides the "serverPort" setting)
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0 ? Integer.parseInt(args[0]) : SeedConfig.getInt("serverPort", 8080));
+        final int wait = SeedConfig.getInt("serverShutdownWait", 10);
+        final SeedServer server = new SeedServer(new SeedQueryHandler(), port,
+                SeedConfig.getInt("serverMaxInFlight", 1000), SeedConfig.getBoolean("serverVerify", true));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.shutdown(wait), "SeedServerShutdown"));
+        server.start();
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class is the second cache tier, between the in-process cache and the SEED.  It looks each
+ * query up in a {@link SharedCache} used by all the skill instances, and only asks the underlying
+ * source if the shared cache does not have a current answer.  Answers from the source are written
+ * back to the shared cache in the background.
+ *
+ * The lookup is time-boxed:  if the shared cache has not answered within a few milliseconds (or
+ * before the request deadline, see {@link Deadline}), the query goes to the source, so a slow shared
+ * cache never costs more than the time box.  Entries written with a different version are ignored,
+ * so bumping the version invalidates the whole shared cache after a change in answer format.
+ *
+ * An answer from the shared cache must not outlive its shared entry, so the expiration times of recent
+ * hits are remembered, and the in-process cache uses them to limit the expiration of the answers it
+ * stores (see {@link #getExpiryLimit(String)}).
+ */
+public class SeedSharedTier implements SeedSource {
+
+    /** maximum number of hit expiration times to remember */
+    private static final int MAX_HITS = 1000;
+
+    /** underlying data source */
+    private final SeedSource source;
+    /** shared cache */
+    private final SharedCache shared;
+    /** maximum milliseconds to wait for the shared cache */
+    private final long timeout;
+    /** version of the entries written and accepted */
+    private final int version;
+    /** function returning the time-to-live in milliseconds for an action */
+    private final ToLongFunction<String> ttl;
+    /** number of lookups answered */
+    private final AtomicLong hitCount;
+    /** number of lookups not answered */
+    private final AtomicLong missCount;
+    /** number of lookups abandoned because the shared cache was too slow */
+    private final AtomicLong timeoutCount;
+    /** number of lookups that failed */
+    private final AtomicLong errorCount;
+    /** map of keys to the expiration times of recent hits, in access order; all access must be synchronized on it */
+    private final Map<String, Long> hitExpires;
+
+    /**
+     * Construct a shared cache tier.
+     *
+     * @param source     underlying data source
+     * @param shared     shared cache
+     * @param timeout    maximum milliseconds to wait for the shared cache
+     * @param version    version of the entries written and accepted
+     * @param ttl        function returning the time-to-live in milliseconds for an action
+     */
+    public SeedSharedTier(SeedSource source, SharedCache shared, long timeout, int version,
+            ToLongFunction<String> ttl) {
+        this.source = source;
+        this.shared = shared;
+        this.timeout = timeout;
+        this.version = version;
+        this.ttl = ttl;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.hitExpires = new LinkedHashMap<String, Long>(MAX_HITS * 4 / 3 + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return (this.size() > MAX_HITS);
+            }
+        };
+    }
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        String retVal = null;
+        if (parameter == null) {
+            retVal = this.source.getData(action, parameter);
+        } else {
+            retVal = this.lookup(SeedCache.key(action, parameter));
+            if (retVal == null) {
+                retVal = this.source.getData(action, parameter);
+                this.put(action, parameter, retVal);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the current answer for a key in the shared cache, or NULL if there is none or it did not
+     *         arrive in time
+     *
+     * @param key    cache key
+     */
+    private String lookup(String key) {
+        String retVal = null;
+        long wait = Math.min(this.timeout, Deadline.remaining());
+        if (wait > 0) {
+            CompletableFuture<SharedCache.Entry> future = this.shared.lookup(key);
+            SharedCache.Entry entry = null;
+            try {
+                entry = future.get(wait, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                this.timeoutCount.incrementAndGet();
+                future.cancel(false);
+            } catch (ExecutionException e) {
+                this.errorCount.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (entry != null && entry.getVersion() == this.version
+                    && entry.getExpires() > System.currentTimeMillis()) {
+                retVal = entry.getValue();
+                synchronized (this.hitExpires) {
+                    this.hitExpires.put(key, entry.getExpires());
+                }
+            }
+        }
+        if (retVal == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    /**
+     * Write an answer obtained elsewhere, such as from a batch query, to the shared cache.
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     * @param value        answer text
+     */
+    public void put(String action, String parameter, String value) {
+        long expires = System.currentTimeMillis() + this.ttl.applyAsLong(action);
+        String key = SeedCache.key(action, parameter);
+        synchronized (this.hitExpires) {
+            // This answer is new, so an earlier hit no longer limits it.
+            this.hitExpires.remove(key);
+        }
+        this.shared.store(key, new SharedCache.Entry(this.version, expires, value));
+    }
+
+    /**
+     * @return the time at which the most recent shared cache hit for a key expires, or the maximum
+     *         long value if the key's latest answer did not come from the shared cache
+     *
+     * @param key    cache key
+     */
+    public long getExpiryLimit(String key) {
+        Long retVal;
+        synchronized (this.hitExpires) {
+            retVal = this.hitExpires.get(key);
+        }
+        return (retVal == null ? Long.MAX_VALUE : retVal);
+    }
+
+    /**
+     * @return a printable summary of the shared tier statistics
+     */
+    public String getStats() {
+        return String.format("hits=%d, misses=%d, timeouts=%d, errors=%d, %s", this.hitCount.get(),
+                this.missCount.get(), this.timeoutCount.get(), this.errorCount.get(), this.shared.getStats());
+    }
+
+}
@@ -0,0 +1,341 @@
+package org.theseed.alexa;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class provides access to an offline snapshot of SEED answers.  The snapshot is a binary file
+ * built by {@link SnapshotBuilder} and memory-mapped when it is opened.  It is divided into sections,
+ * one per action, and each section has an index of fixed-width records sorted by parameter (for the
+ * genome section, this is a sorted genome-ID index).  A lookup is a binary search that compares the
+ * query bytes directly against the mapped file, so no heap objects are created for the entries.
+ * Parameters are compared in lower case.
+ *
+ * The file layout is as follows.  All integers are big-endian, and all strings are UTF-8.
+ *
+ *  header      8-byte magic string "SEEDSNAP", int format version, long build time in milliseconds,
+ *              int section count
+ *  sections    for each section:  short action name length, action name bytes, int entry count,
+ *              int file offset of the section index
+ *  indexes     for each section:  one 16-byte record per entry, sorted by key bytes, consisting of
+ *              int key offset, int key length, int value offset, int value length
+ *  heap        key and value bytes
+ */
+public class SeedSnapshot {
+
+    /** magic string at the start of the file */
+    private static final byte[] MAGIC = "SEEDSNAP".getBytes(StandardCharsets.US_ASCII);
+    /** current format version */
+    private static final int VERSION = 1;
+    /** size of an index record */
+    private static final int RECORD_SIZE = 16;
+
+    /** mapped file */
+    private final ByteBuffer buffer;
+    /** time at which the snapshot was built */
+    private final long buildTime;
+    /** map of action names to sections */
+    private final Map<String, Section> sections;
+    /** number of lookups answered */
+    private final AtomicLong hitCount;
+    /** number of lookups not answered */
+    private final AtomicLong missCount;
+
+    /**
+     * This class describes a section of the snapshot.
+     */
+    private static class Section {
+        /** number of entries */
+        private final int count;
+        /** offset of the index */
+        private final int indexOffset;
+
+        /**
+         * Create a section descriptor.
+         *
+         * @param count          number of entries
+         * @param indexOffset    offset of the index
+         */
+        private Section(int count, int indexOffset) {
+            this.count = count;
+            this.indexOffset = indexOffset;
+        }
+    }
+
+    /**
+     * Open a snapshot file.
+     *
+     * @param file    snapshot file to map
+     *
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public SeedSnapshot(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        // Validate the header.
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (this.buffer.get(i) != MAGIC[i]) {
+                throw new IOException(file + " is not a SEED snapshot.");
+            }
+        }
+        int pos = MAGIC.length;
+        int version = this.buffer.getInt(pos);
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported snapshot version " + version + ".");
+        }
+        this.buildTime = this.buffer.getLong(pos + 4);
+        int sectionCount = this.buffer.getInt(pos + 12);
+        pos += 16;
+        // Read the section table.
+        this.sections = new HashMap<String, Section>();
+        for (int i = 0; i < sectionCount; i++) {
+            int len = this.buffer.getShort(pos);
+            String action = this.readString(pos + 2, len);
+            pos += 2 + len;
+            this.sections.put(action, new Section(this.buffer.getInt(pos), this.buffer.getInt(pos + 4)));
+            pos += 8;
+        }
+    }
+
+    /**
+     * @return the answer for a query, or NULL if the snapshot does not have it
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    public String find(String action, String parameter) {
+        String retVal = null;
+        Section section = this.sections.get(action);
+        if (section != null && parameter != null) {
+            byte[] key = parameter.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+            int lo = 0;
+            int hi = section.count - 1;
+            while (retVal == null && lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int record = section.indexOffset + mid * RECORD_SIZE;
+                int cmp = this.compare(this.buffer.getInt(record), this.buffer.getInt(record + 4), key);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    retVal = this.readString(this.buffer.getInt(record + 8), this.buffer.getInt(record + 12));
+                }
+            }
+        }
+        if (retVal == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a negative number, zero, or a positive number depending on whether a key in the file
+     *         is less than, equal to, or greater than the query key (comparing unsigned bytes)
+     *
+     * @param offset    offset of the file key
+     * @param length    length of the file key
+     * @param key       query key
+     */
+    private int compare(int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        int retVal = 0;
+        for (int i = 0; retVal == 0 && i < n; i++) {
+            retVal = (this.buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+        }
+        if (retVal == 0) {
+            retVal = length - key.length;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a string decoded from the file
+     *
+     * @param offset    offset of the string
+     * @param length    length of the string in bytes
+     */
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = this.buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the time at which the snapshot was built, in milliseconds
+     */
+    public long getBuildTime() {
+        return this.buildTime;
+    }
+
+    /**
+     * @return TRUE if the snapshot is older than the specified age
+     *
+     * @param maxAge    maximum acceptable age in milliseconds
+     */
+    public boolean isStale(long maxAge) {
+        return System.currentTimeMillis() - this.buildTime > maxAge;
+    }
+
+    /**
+     * @return the number of entries for an action
+     *
+     * @param action    name of the action
+     */
+    public int size(String action) {
+        Section section = this.sections.get(action);
+        return (section == null ? 0 : section.count);
+    }
+
+    /**
+     * @return the number of lookups answered
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups not answered
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return a printable summary of the snapshot statistics
+     */
+    public String getStats() {
+        return String.format("ageHours=%d, hits=%d, misses=%d",
+                (System.currentTimeMillis() - this.buildTime) / 3600000, this.getHitCount(), this.getMissCount());
+    }
+
+    /**
+     * Write a snapshot file.
+     *
+     * @param file         output file
+     * @param buildTime    build time to store in the snapshot
+     * @param data         map of action names to maps of parameters to answers
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, long buildTime, Map<String, Map<String, String>> data) throws IOException {
+        // Sort each section by key bytes, which is the order the binary search uses.
+        List<byte[]> actions = new ArrayList<byte[]>();
+        List<TreeMap<ByteKey, byte[]>> sorted = new ArrayList<TreeMap<ByteKey, byte[]>>();
+        int headerSize = MAGIC.length + 16;
+        for (Map.Entry<String, Map<String, String>> section : data.entrySet()) {
+            byte[] action = section.getKey().getBytes(StandardCharsets.UTF_8);
+            actions.add(action);
+            headerSize += 2 + action.length + 8;
+            TreeMap<ByteKey, byte[]> entries = new TreeMap<ByteKey, byte[]>();
+            for (Map.Entry<String, String> entry : section.getValue().entrySet()) {
+                byte[] key = entry.getKey().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+                entries.put(new ByteKey(key), entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+            sorted.add(entries);
+        }
+        // Compute the index offsets.  The heap follows the indexes.
+        int[] indexOffsets = new int[sorted.size()];
+        int pos = headerSize;
+        for (int i = 0; i < sorted.size(); i++) {
+            indexOffsets[i] = pos;
+            pos += sorted.get(i).size() * RECORD_SIZE;
+        }
+        int heapStart = pos;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(buildTime);
+            out.writeInt(sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                byte[] action = actions.get(i);
+                out.writeShort(action.length);
+                out.write(action);
+                out.writeInt(sorted.get(i).size());
+                out.writeInt(indexOffsets[i]);
+            }
+            // Write the index records, laying out the heap as we go.
+            int heapPos = heapStart;
+            for (TreeMap<ByteKey, byte[]> entries : sorted) {
+                for (Map.Entry<ByteKey, byte[]> entry : entries.entrySet()) {
+                    int keyLen = entry.getKey().bytes.length;
+                    out.writeInt(heapPos);
+                    out.writeInt(keyLen);
+                    out.writeInt(heapPos + keyLen);
+                    out.writeInt(entry.getValue().length);
+                    heapPos += keyLen + entry.getValue().length;
+                }
+            }
+            // Write the heap.
+            for (TreeMap<ByteKey, byte[]> entries : sorted) {
+                for (Map.Entry<ByteKey, byte[]> entry : entries.entrySet()) {
+                    out.write(entry.getKey().bytes);
+                    out.write(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * This class is a byte-array key that sorts in unsigned byte order.
+     */
+    private static class ByteKey implements Comparable<ByteKey> {
+        /** key bytes */
+        private final byte[] bytes;
+
+        /**
+         * Create a byte key.
+         *
+         * @param bytes    key bytes
+         */
+        private ByteKey(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int compareTo(ByteKey o) {
+            int n = Math.min(this.bytes.length, o.bytes.length);
+            int retVal = 0;
+            for (int i = 0; retVal == 0 && i < n; i++) {
+                retVal = (this.bytes[i] & 0xFF) - (o.bytes[i] & 0xFF);
+            }
+            if (retVal == 0) {
+                retVal = this.bytes.length - o.bytes.length;
+            }
+            return retVal;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof ByteKey && this.compareTo((ByteKey) obj) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.bytes);
+        }
+    }
+
+}
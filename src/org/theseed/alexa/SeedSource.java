@@ -0,0 +1,52 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This interface represents a source of SEED data.  Every question the skill asks of the SEED
+ * is an action name and a parameter string, and the answer is a line of text to be spoken.
+ */
+public interface SeedSource {
+
+    /**
+     * @return the answer to a SEED query
+     *
+     * @param action       name of the action to perform (usually the intent name)
+     * @param parameter    parameter for the action
+     *
+     * @throws IOException if the SEED could not be reached
+     */
+    public String getData(String action, String parameter) throws IOException;
+
+    /**
+     * @return a map of parameters to answers for several queries with the same action, in the order
+     *         of the parameters.  The default implementation asks for each one separately; sources
+     *         that can answer them together override it.
+     *
+     * @param action        name of the action to perform
+     * @param parameters    parameters for the queries
+     *
+     * @throws IOException if the SEED could not be reached
+     */
+    public default Map<String, String> getBatch(String action, Collection<String> parameters) throws IOException {
+        Map<String, String> retVal = new LinkedHashMap<String, String>();
+        for (String parameter : parameters) {
+            retVal.put(parameter, this.getData(action, parameter));
+        }
+        return retVal;
+    }
+
+    /**
+     * @return FALSE if a genome is certainly not in the SEED, TRUE if it may be.  This must be answered
+     *         without a query to the SEED.  The default implementation only checks the form of the ID.
+     *
+     * @param genomeId    ID of the genome to check
+     */
+    public default boolean isKnownGenome(String genomeId) {
+        return GenomeFilter.isValidId(genomeId);
+    }
+
+}
@@ -0,0 +1,31 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown when the SEED cannot answer a query in time.  Its message is suitable
+ * for speaking to the user.
+ */
+public class SeedUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** message for a query that ran out of time */
+    public static final String TIMEOUT = "I am sorry, but the SEED is taking too long to answer. Please try again later.";
+
+    /** message for a query refused because the SEED is unhealthy */
+    public static final String UNAVAILABLE = "I am sorry, but the SEED is unavailable right now. Please try again later.";
+
+    /** message for a query refused because too many queries are waiting on the SEED */
+    public static final String BUSY = "I am sorry, but the SEED is busy right now. Please try again in a moment.";
+
+    /**
+     * Construct a SEED-unavailable exception.
+     *
+     * @param message    message to speak to the user
+     */
+    public SeedUnavailableException(String message) {
+        super(message);
+    }
+
+}
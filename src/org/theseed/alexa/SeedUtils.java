@@ -0,0 +1,96 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class contains static utility methods shared by the skill's components.
+ */
+final class SeedUtils {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedUtils.class);
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private SeedUtils() { }
+
+    /**
+     * @return an executor that runs each task on a new virtual thread, or a cached pool of daemon
+     *         threads if virtual threads are not supported by this JVM
+     *
+     * @param name    name for the pool threads
+     */
+    static ExecutorService createExecutor(String name) {
+        ExecutorService retVal;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            retVal = (ExecutorService) factory.invoke(null);
+            log.info("{} tasks will run on virtual threads.", name);
+        } catch (ReflectiveOperationException e) {
+            retVal = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Virtual threads not supported:  {} tasks will run on a thread pool.", name);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a 64-bit hash of a string (FNV-1a followed by a final mix).  The value must never
+     *         change, since it is stored in files such as the genome filter.
+     *
+     * @param text    string to hash
+     */
+    static long hash(String text) {
+        long retVal = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            retVal ^= text.charAt(i);
+            retVal *= 0x100000001b3L;
+        }
+        retVal ^= (retVal >>> 33);
+        retVal *= 0xff51afd7ed558ccdL;
+        retVal ^= (retVal >>> 33);
+        retVal *= 0xc4ceb9fe1a85ec53L;
+        retVal ^= (retVal >>> 33);
+        return retVal;
+    }
+
+    /**
+     * Replace a file's contents so that a reader sees either the old contents or the new ones, never
+     * a partial file.  The data is written to a temporary file in the same directory, which is then
+     * renamed over the target.
+     *
+     * @param target    file to write
+     * @param data      new contents of the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    static void writeAtomically(File target, byte[] data) throws IOException {
+        Path targetPath = target.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(targetPath.getParent(), targetPath.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.theseed.alexa;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazon.speech.speechlet.Session;
+
+/**
+ * This class holds the conversational state for a session:  the genome the user last asked about and
+ * the SEED answers already fetched for it.  It lets follow-up questions such as "how many features
+ * does it have" be resolved against the last genome and, when possible, answered without going back
+ * to the SEED.
+ *
+ * The state travels with the session as a single string attribute.  The encoding is compact:  the
+ * genome ID on the first line, then one line per answer consisting of a short action code, a tab and
+ * the answer text.  The encoded state is capped in size; if it is too large, the oldest answers are
+ * dropped.
+ *
+ * The following setting (see {@link SeedConfig}) controls the state.
+ *
+ *  sessionMaxChars     maximum size of the encoded state in characters (default 1500)
+ */
+public class SessionState {
+
+    /** name of the session attribute holding the state */
+    public static final String ATTRIBUTE = "seed";
+
+    /** maximum size of the encoded state */
+    private static final int MAX_CHARS = SeedConfig.getInt("sessionMaxChars", 1500);
+
+    /** map of action names to short codes */
+    private static final Map<String, String> CODES = new HashMap<String, String>();
+    /** map of short codes to action names */
+    private static final Map<String, String> ACTIONS = new HashMap<String, String>();
+
+    static {
+        String[] pairs = new String[] { "GenomeIntent", "s", "GenomeName", "n", "GenomeContigs", "c",
+                "GenomeFeatures", "f", "GenomeSubsystems", "u" };
+        for (int i = 0; i < pairs.length; i += 2) {
+            CODES.put(pairs[i], pairs[i + 1]);
+            ACTIONS.put(pairs[i + 1], pairs[i]);
+        }
+    }
+
+    /** ID of the current genome, or NULL if there is none */
+    private String genomeId;
+    /** map of action names to answers for the current genome, oldest first */
+    private final LinkedHashMap<String, String> facts;
+
+    /**
+     * Create an empty session state.
+     */
+    public SessionState() {
+        this.facts = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * @return the state stored in a session, or an empty state if there is none
+     *
+     * @param session    session containing the state
+     */
+    public static SessionState load(Session session) {
+        Object value = (session == null ? null : session.getAttribute(ATTRIBUTE));
+        return (value instanceof String ? decode((String) value) : new SessionState());
+    }
+
+    /**
+     * Store this state in a session.
+     *
+     * @param session    session in which to store the state
+     */
+    public void save(Session session) {
+        if (session != null) {
+            session.setAttribute(ATTRIBUTE, this.encode());
+        }
+    }
+
+    /**
+     * @return the encoded form of this state, with the oldest answers dropped if it is too large
+     */
+    protected String encode() {
+        String retVal = this.encodeAll();
+        Iterator<String> iter = this.facts.keySet().iterator();
+        while (retVal.length() > MAX_CHARS && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            retVal = this.encodeAll();
+        }
+        if (retVal.length() > MAX_CHARS) {
+            this.genomeId = null;
+            retVal = "";
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the encoded form of this state, regardless of size
+     */
+    private String encodeAll() {
+        StringBuilder retVal = new StringBuilder(128);
+        if (this.genomeId != null) {
+            retVal.append(this.genomeId);
+            for (Map.Entry<String, String> fact : this.facts.entrySet()) {
+                String code = CODES.get(fact.getKey());
+                // Tabs and new-lines are used by the encoding, so they are changed to spaces.
+                retVal.append('\n').append(code == null ? fact.getKey() : code).append('\t')
+                        .append(fact.getValue().replace('\t', ' ').replace('\n', ' '));
+            }
+        }
+        return retVal.toString();
+    }
+
+    /**
+     * @return a session state decoded from its string form
+     *
+     * @param encoded    encoded session state
+     */
+    protected static SessionState decode(String encoded) {
+        SessionState retVal = new SessionState();
+        if (! encoded.isEmpty()) {
+            String[] lines = encoded.split("\n");
+            retVal.genomeId = lines[0];
+            for (int i = 1; i < lines.length; i++) {
+                int tab = lines[i].indexOf('\t');
+                if (tab > 0) {
+                    String code = lines[i].substring(0, tab);
+                    String action = ACTIONS.get(code);
+                    retVal.facts.put(action == null ? code : action, lines[i].substring(tab + 1));
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the ID of the current genome, or NULL if there is none
+     */
+    public String getGenomeId() {
+        return this.genomeId;
+    }
+
+    /**
+     * Make a genome the current one.  If it is a different genome, the answers for the old one are
+     * discarded.
+     *
+     * @param genomeId    ID of the new current genome
+     */
+    public void setGenomeId(String genomeId) {
+        if (! genomeId.equals(this.genomeId)) {
+            this.genomeId = genomeId;
+            this.facts.clear();
+        }
+    }
+
+    /**
+     * @return the stored answer to an action for the current genome, or NULL if there is none
+     *
+     * @param action    name of the action
+     */
+    public String getFact(String action) {
+        return this.facts.get(action);
+    }
+
+    /**
+     * Store the answer to an action for the current genome.
+     *
+     * @param action    name of the action
+     * @param answer    answer to store
+     */
+    public void putFact(String action, String answer) {
+        // Re-inserting moves the answer to the end, so it is the last one dropped.
+        this.facts.remove(action);
+        this.facts.put(action, answer);
+    }
+
+    /**
+     * @return the modifiable map of action names to answers for the current genome
+     */
+    public Map<String, String> getFacts() {
+        return this.facts;
+    }
+
+}
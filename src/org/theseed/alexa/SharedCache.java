@@ -0,0 +1,84 @@
+package org.theseed.alexa;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This interface represents a cache of SEED answers shared by all the skill instances, such as a
+ * directory on a shared file system or a network key-value store.  It is the second tier behind the
+ * in-process {@link SeedCache} (see {@link SeedSharedTier}).
+ *
+ * All operations are asynchronous, so that a slow store can be abandoned by the caller.  Each entry
+ * carries a format version and an expiration time; entries with a different version or past their
+ * expiration time are treated as missing.  Implementations must be thread-safe.
+ */
+public interface SharedCache {
+
+    /**
+     * This class is an entry in a shared cache.
+     */
+    public static class Entry {
+        /** format version of the entry */
+        private final int version;
+        /** time at which the entry expires, in milliseconds since the epoch */
+        private final long expires;
+        /** answer text */
+        private final String value;
+
+        /**
+         * Create a shared cache entry.
+         *
+         * @param version    format version of the entry
+         * @param expires    time at which the entry expires, in milliseconds since the epoch
+         * @param value      answer text
+         */
+        public Entry(int version, long expires, String value) {
+            this.version = version;
+            this.expires = expires;
+            this.value = value;
+        }
+
+        /**
+         * @return the format version of the entry
+         */
+        public int getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return the time at which the entry expires, in milliseconds since the epoch
+         */
+        public long getExpires() {
+            return this.expires;
+        }
+
+        /**
+         * @return the answer text
+         */
+        public String getValue() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * @return a future for the entry with a specified key; the future completes with NULL if there is
+     *         no entry
+     *
+     * @param key    cache key
+     */
+    public CompletableFuture<Entry> lookup(String key);
+
+    /**
+     * Store an entry.  The caller does not wait for the store to finish.
+     *
+     * @param key      cache key
+     * @param entry    entry to store
+     */
+    public void store(String key, Entry entry);
+
+    /**
+     * @return a printable summary of the store's statistics
+     */
+    public String getStats();
+
+}
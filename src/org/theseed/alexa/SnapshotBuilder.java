@@ -0,0 +1,85 @@
+package org.theseed.alexa;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class builds a SEED snapshot file (see {@link SeedSnapshot}).  It asks the SEED server for the
+ * count of every object type in the LIST_OF_OBJECTS slot type and the summary of every genome in a
+ * genome list, and writes the answers to the snapshot.  It is meant to be run by a scheduled job,
+ * with the output shipped in the deployment package.
+ *
+ * The positional parameters are the name of the output file, the name of the genome list file (one
+ * genome ID per line), and optionally the name of the object-type file (default
+ * "speechAssets/customSlotTypes/LIST_OF_OBJECTS").
+ */
+public class SnapshotBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotBuilder.class);
+
+    /**
+     * Build a snapshot.
+     *
+     * @param args    output file name, genome list file name, and optional object-type file name
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SnapshotBuilder outFile genomeFile [objectFile]");
+            System.exit(1);
+        }
+        String objectFile = (args.length > 2 ? args[2] : "speechAssets/customSlotTypes/LIST_OF_OBJECTS");
+        SeedSource seed = SeedClient.getInstance();
+        long buildTime = System.currentTimeMillis();
+        Map<String, Map<String, String>> data = new HashMap<String, Map<String, String>>();
+        data.put("CountIntent", fetchAll(seed, "CountIntent", readList(objectFile)));
+        data.put("GenomeIntent", fetchAll(seed, "GenomeIntent", readList(args[1])));
+        SeedSnapshot.write(new File(args[0]), buildTime, data);
+        log.info("Snapshot written to {}.", args[0]);
+    }
+
+    /**
+     * @return the non-blank lines of a file, trimmed
+     *
+     * @param fileName    name of the file to read
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private static List<String> readList(String fileName) throws IOException {
+        List<String> retVal = Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8);
+        retVal.replaceAll(String::trim);
+        retVal.removeIf(String::isEmpty);
+        return retVal;
+    }
+
+    /**
+     * @return a map of parameters to SEED answers for an action
+     *
+     * @param seed          source of SEED data
+     * @param action        name of the action
+     * @param parameters    list of parameters to query
+     */
+    private static Map<String, String> fetchAll(SeedSource seed, String action, List<String> parameters) {
+        Map<String, String> retVal = new HashMap<String, String>(parameters.size() * 2);
+        for (String parameter : parameters) {
+            try {
+                retVal.put(parameter, seed.getData(action, parameter));
+            } catch (IOException e) {
+                log.warn("Could not fetch {} {}: {}", action, parameter, e.getMessage());
+            }
+        }
+        log.info("{} {} answers fetched.", retVal.size(), action);
+        return retVal;
+    }
+
+}
@@ -0,0 +1,408 @@
+package org.theseed.alexa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * This class captures skill traffic to an append-only log, so that real request mixes can be
+ * replayed offline (see TrafficReplay in the benchmarks).  Each record holds the time the request
+ * arrived, the total and back-end processing times, the response size, the request type, intent
+ * name and slots, and the request envelope.  Before a request is queued, the user and device IDs in
+ * the envelope are replaced by hashes (so the requests of one user can still be grouped) and the
+ * access tokens are removed.  A request that cannot be parsed is not captured, since it cannot be
+ * redacted.
+ *
+ * The request path only redacts the request and queues it; the records are parsed and written by a
+ * background thread through a large buffer, which is flushed whenever the queue is empty.  If the
+ * queue is full the record is dropped, so capture never blocks a request.
+ *
+ * The file layout is as follows.  All integers are big-endian, and strings are in the modified UTF-8
+ * of {@link DataOutputStream#writeUTF(String)}.
+ *
+ *  header      8-byte magic string "SEEDCAP1"
+ *  records     long arrival time in milliseconds since the epoch, int total microseconds, int
+ *              back-end microseconds, int response bytes, string request type, string intent name
+ *              (empty if none), string slots (comma-separated name=value pairs), int request length,
+ *              redacted request bytes
+ *
+ * The following settings (see {@link SeedConfig}) control the capture.
+ *
+ *  captureFile         name of the capture log (default none, which turns capture off)
+ *  captureQueue        maximum number of records waiting to be written (default 10000)
+ */
+public class TrafficCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficCapture.class);
+
+    /** magic string at the start of the file */
+    private static final byte[] MAGIC = "SEEDCAP1".getBytes(StandardCharsets.US_ASCII);
+    /** factory for request parsers */
+    private static final JsonFactory JSON = new JsonFactory();
+    /** names of envelope fields whose values are replaced by hashes */
+    private static final Set<String> HASHED_FIELDS = new HashSet<String>(Arrays.asList("userId", "deviceId",
+            "personId"));
+    /** names of envelope fields whose values are removed */
+    private static final Set<String> SECRET_FIELDS = new HashSet<String>(Arrays.asList("accessToken",
+            "apiAccessToken", "consentToken"));
+
+    /** capture log file */
+    private final File file;
+    /** output stream for the log */
+    private final DataOutputStream out;
+    /** records waiting to be written */
+    private final BlockingQueue<Record> queue;
+    /** background writer thread */
+    private final Thread writer;
+    /** TRUE if the capture has been closed */
+    private volatile boolean closed;
+    /** number of records written */
+    private final AtomicLong writeCount;
+    /** number of records dropped because the queue was full */
+    private final AtomicLong dropCount;
+
+    /**
+     * This class is a captured request.
+     */
+    public static class Record {
+        /** arrival time in milliseconds since the epoch */
+        private long time;
+        /** total processing time in microseconds */
+        private int totalMicros;
+        /** back-end processing time in microseconds */
+        private int backendMicros;
+        /** response size in bytes */
+        private int responseBytes;
+        /** request type */
+        private String type;
+        /** intent name, or an empty string if there is none */
+        private String intent;
+        /** slots, as comma-separated name=value pairs */
+        private String slots;
+        /** redacted request envelope bytes */
+        private byte[] request;
+
+        /**
+         * @return the arrival time in milliseconds since the epoch
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * @return the total processing time in microseconds
+         */
+        public int getTotalMicros() {
+            return this.totalMicros;
+        }
+
+        /**
+         * @return the back-end processing time in microseconds
+         */
+        public int getBackendMicros() {
+            return this.backendMicros;
+        }
+
+        /**
+         * @return the response size in bytes
+         */
+        public int getResponseBytes() {
+            return this.responseBytes;
+        }
+
+        /**
+         * @return the request type
+         */
+        public String getType() {
+            return this.type;
+        }
+
+        /**
+         * @return the intent name, or an empty string if there is none
+         */
+        public String getIntent() {
+            return this.intent;
+        }
+
+        /**
+         * @return the slots, as comma-separated name=value pairs
+         */
+        public String getSlots() {
+            return this.slots;
+        }
+
+        /**
+         * @return the redacted request envelope as a string
+         */
+        public String getRequest() {
+            return new String(this.request, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the intent name, or the request type if there is no intent
+         */
+        public String getName() {
+            return (this.intent.isEmpty() ? this.type : this.intent);
+        }
+    }
+
+    /**
+     * Open a capture log for appending.
+     *
+     * @param file         capture log file
+     * @param queueSize    maximum number of records waiting to be written
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public TrafficCapture(File file, int queueSize) throws IOException {
+        this.file = file;
+        boolean empty = (! file.exists() || file.length() == 0);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 65536));
+        if (empty) {
+            this.out.write(MAGIC);
+        }
+        this.queue = new ArrayBlockingQueue<Record>(queueSize);
+        this.writeCount = new AtomicLong();
+        this.dropCount = new AtomicLong();
+        this.writer = new Thread(this::writeLoop, "TrafficCapture");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * @return the capture named by the "captureFile" setting, or NULL if capture is off or the file
+     *         cannot be opened
+     */
+    public static TrafficCapture open() {
+        TrafficCapture retVal = null;
+        String fileName = SeedConfig.getString("captureFile", "");
+        if (! fileName.isEmpty()) {
+            try {
+                retVal = new TrafficCapture(new File(fileName), SeedConfig.getInt("captureQueue", 10000));
+                log.info("Capturing traffic to {}.", fileName);
+            } catch (IOException e) {
+                log.error("Could not open capture file {}: {}", fileName, e.getMessage());
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Queue a request to be captured.  This never blocks.  The request is redacted first, and it is
+     * dropped if it cannot be parsed.
+     *
+     * @param request          buffer containing the request envelope
+     * @param length           number of bytes in the request
+     * @param totalNanos       total processing time in nanoseconds
+     * @param backendNanos     back-end processing time in nanoseconds
+     * @param responseBytes    response size in bytes
+     */
+    public void record(byte[] request, int length, long totalNanos, long backendNanos, int responseBytes) {
+        Record record = new Record();
+        record.time = System.currentTimeMillis() - totalNanos / 1000000;
+        record.totalMicros = (int) Math.min(Integer.MAX_VALUE, totalNanos / 1000);
+        record.backendMicros = (int) Math.min(Integer.MAX_VALUE, backendNanos / 1000);
+        record.responseBytes = responseBytes;
+        record.request = redact(request, length);
+        if (this.closed || record.request == null || ! this.queue.offer(record)) {
+            this.dropCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return a copy of a request envelope with the user and device IDs hashed and the access tokens
+     *         removed, or NULL if the envelope is not valid JSON
+     *
+     * @param request    buffer containing the request envelope
+     * @param length     number of bytes in the request
+     */
+    protected static byte[] redact(byte[] request, int length) {
+        byte[] retVal = null;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length);
+        try (JsonParser parser = JSON.createParser(request, 0, length);
+                JsonGenerator out = JSON.createGenerator(buffer)) {
+            // This is the name of the field whose value is next, or NULL if the next token is not a field value.
+            String field = null;
+            JsonToken token = parser.nextToken();
+            while (token != null) {
+                if (token == JsonToken.FIELD_NAME) {
+                    field = parser.getCurrentName();
+                    out.writeFieldName(field);
+                } else {
+                    if (token == JsonToken.VALUE_STRING && HASHED_FIELDS.contains(field)) {
+                        out.writeString(String.format("anon-%016x", SeedUtils.hash(parser.getText())));
+                    } else if (token == JsonToken.VALUE_STRING && SECRET_FIELDS.contains(field)) {
+                        out.writeString("");
+                    } else {
+                        out.copyCurrentEvent(parser);
+                    }
+                    field = null;
+                }
+                token = parser.nextToken();
+            }
+            out.flush();
+            retVal = buffer.toByteArray();
+        } catch (IOException e) {
+            // The envelope is not valid JSON, so it cannot be redacted.
+        }
+        return retVal;
+    }
+
+    /**
+     * Write queued records until the capture is closed, flushing whenever the queue is empty.
+     */
+    private void writeLoop() {
+        try {
+            while (! this.closed || ! this.queue.isEmpty()) {
+                Record record = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                while (record != null) {
+                    this.write(record);
+                    record = this.queue.poll();
+                }
+                this.out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Traffic capture stopped:  {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a record's request and write the record to the log.
+     *
+     * @param record    record to write
+     *
+     * @throws IOException if the log cannot be written
+     */
+    private void write(Record record) throws IOException {
+        parse(record);
+        this.out.writeLong(record.time);
+        this.out.writeInt(record.totalMicros);
+        this.out.writeInt(record.backendMicros);
+        this.out.writeInt(record.responseBytes);
+        this.out.writeUTF(record.type);
+        this.out.writeUTF(record.intent);
+        this.out.writeUTF(record.slots);
+        this.out.writeInt(record.request.length);
+        this.out.write(record.request);
+        this.writeCount.incrementAndGet();
+    }
+
+    /**
+     * Fill in the request type, intent name and slots of a record from its request envelope.
+     *
+     * @param record    record to parse
+     */
+    private static void parse(Record record) {
+        record.type = "";
+        record.intent = "";
+        StringBuilder slots = new StringBuilder(64);
+        try {
+            RequestScanner fields = new RequestScanner(record.request, record.request.length);
+            record.type = (fields.getType() == null ? "" : fields.getType());
+            record.intent = (fields.getIntent() == null ? "" : fields.getIntent());
+            for (Map.Entry<String, String> slot : fields.getSlots().entrySet()) {
+                if (slots.length() > 0) {
+                    slots.append(',');
+                }
+                slots.append(slot.getKey()).append('=').append(slot.getValue() == null ? "" : slot.getValue());
+            }
+        } catch (IOException e) {
+            // Leave the fields empty.
+        }
+        record.slots = slots.toString();
+    }
+
+    /**
+     * Write all the queued records and close the log.
+     */
+    public void close() {
+        if (! this.closed) {
+            this.closed = true;
+            try {
+                this.writer.join(5000);
+                this.out.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.error("Error closing capture file {}: {}", this.file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the records in a capture log
+     *
+     * @param file    capture log to read
+     *
+     * @throws IOException if the file cannot be read or is not a capture log
+     */
+    public static List<Record> read(File file) throws IOException {
+        List<Record> retVal = new ArrayList<Record>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (! Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a capture log.");
+            }
+            boolean done = false;
+            while (! done) {
+                Record record = new Record();
+                try {
+                    record.time = in.readLong();
+                } catch (EOFException e) {
+                    done = true;
+                }
+                if (! done) {
+                    record.totalMicros = in.readInt();
+                    record.backendMicros = in.readInt();
+                    record.responseBytes = in.readInt();
+                    record.type = in.readUTF();
+                    record.intent = in.readUTF();
+                    record.slots = in.readUTF();
+                    record.request = new byte[in.readInt()];
+                    in.readFully(record.request);
+                    retVal.add(record);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a printable summary of the capture statistics
+     */
+    public String getStats() {
+        return String.format("file=%s, written=%d, dropped=%d, queued=%d", this.file, this.writeCount.get(),
+                this.dropCount.get(), this.queue.size());
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.theseed.alexa;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A simple helper for measuring the bytes allocated by the current thread.  It relies
+ * on the HotSpot extension of {@code ThreadMXBean}, and reports -1 if that is not
+ * available.
+ */
+public class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean bean = getBean();
+
+    private static com.sun.management.ThreadMXBean getBean() {
+        java.lang.management.ThreadMXBean retVal = ManagementFactory.getThreadMXBean();
+        return (retVal instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) retVal : null);
+    }
+
+    /**
+     * @return the number of bytes allocated so far by the current thread, or -1 if unknown
+     */
+    public static long allocated() {
+        return (bean == null ? -1 : bean.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    /**
+     * @return the mean number of bytes allocated per run of a task, or -1 if unknown
+     *
+     * @param runs    number of times to run the task
+     * @param task    task to run
+     */
+    public static long perRun(int runs, Runnable task) {
+        // Warm up first, so class loading and JIT do not count.
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        long start = allocated();
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        long end = allocated();
+        return (start < 0 ? -1 : (end - start) / runs);
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the access sketch and the cache warmer.
+ */
+public class CacheWarmerTest {
+
+    @Test
+    public void testSketch() {
+        AccessSketch sketch = new AccessSketch(1000, 3);
+        for (int i = 0; i < 100; i++) {
+            sketch.record("CountIntent\tgenomes");
+            if (i % 2 == 0) {
+                sketch.record("GenomeIntent\t83333.1");
+            }
+            if (i % 4 == 0) {
+                sketch.record("CountIntent\troles");
+            }
+            sketch.record("GenomeIntent\t" + i + ".1");
+        }
+        assertEquals(Arrays.asList("CountIntent\tgenomes", "GenomeIntent\t83333.1", "CountIntent\troles"),
+                sketch.getTop());
+        assertTrue(sketch.estimate("CountIntent\tgenomes") >= 100);
+        assertTrue(sketch.estimate("GenomeIntent\t83333.1") >= 50);
+        sketch.decay();
+        assertTrue(sketch.estimate("CountIntent\tgenomes") >= 50);
+        assertEquals(3, sketch.getTop().size());
+        assertEquals(1024 * 4 * 8, sketch.getMemoryBytes());
+    }
+
+    @Test
+    public void testWarming() throws IOException {
+        File file = File.createTempFile("warm", ".hot");
+        file.deleteOnExit();
+        TestSource source = new TestSource();
+        SeedCache cache = new SeedCache(source, 100, 60000, 0);
+        CacheWarmer warmer = new CacheWarmer(cache, new AccessSketch(64, 10), file, true, 4, 1000, 2000);
+        for (int i = 0; i < 5; i++) {
+            warmer.record("CountIntent", "genomes");
+        }
+        warmer.record("GenomeIntent", "83333.1");
+        warmer.record("GenomeIntent", null);
+        warmer.save();
+        List<String> keys = CacheWarmer.readList(file);
+        // An empty list and a warmer that does not save leave the file alone.
+        new CacheWarmer(cache, new AccessSketch(64, 10), file, true, 4, 1000, 2000).save();
+        CacheWarmer readOnly = new CacheWarmer(cache, new AccessSketch(64, 10), file, false, 4, 1000, 2000);
+        readOnly.record("CountIntent", "roles");
+        readOnly.save();
+        assertEquals(keys, CacheWarmer.readList(file));
+        assertEquals(Arrays.asList("CountIntent\tgenomes", "GenomeIntent\t83333.1"), keys);
+        // A new warmer with an empty sketch loads the saved keys.
+        CacheWarmer restarted = new CacheWarmer(cache, new AccessSketch(64, 10), file, true, 4, 1000, 2000);
+        assertEquals(2, restarted.warm(5000));
+        assertEquals(2, source.getCalls());
+        assertEquals("CountIntent:genomes", cache.peek("CountIntent", "genomes"));
+        assertEquals("GenomeIntent:83333.1", cache.peek("GenomeIntent", "83333.1"));
+        // Fresh answers are not loaded again.
+        restarted.warm(5000);
+        assertEquals(2, source.getCalls());
+        assertEquals(2, restarted.getWarmCount());
+        assertEquals(0, CacheWarmer.readList(new File(file.getPath() + ".missing")).size());
+        Files.delete(file.toPath());
+    }
+
+    @Test
+    public void testRefreshAhead() throws IOException, InterruptedException {
+        File file = File.createTempFile("warm", ".hot");
+        file.deleteOnExit();
+        TestSource source = new TestSource();
+        SeedCache cache = new SeedCache(source, 100, 1000, 0);
+        CacheWarmer warmer = new CacheWarmer(cache, new AccessSketch(64, 10), file, true, 4, 1000, 2000);
+        cache.getData("CountIntent", "genomes");
+        warmer.record("CountIntent", "genomes");
+        assertTrue(cache.getTimeLeft("CountIntent", "genomes") > 0);
+        assertEquals(0, cache.getTimeLeft("CountIntent", "roles"));
+        // The answer goes stale within the look-ahead time, so the background pass refreshes it.
+        warmer.cycle();
+        for (int i = 0; i < 100 && warmer.getRefreshCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, warmer.getRefreshCount());
+        assertEquals(2, source.getCalls());
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(Arrays.asList("CountIntent\tgenomes"), CacheWarmer.readList(file));
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for the genome Bloom filter.
+ */
+public class GenomeFilterTest {
+
+    @Test
+    public void testFilter() throws IOException {
+        GenomeFilter filter = new GenomeFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(i + ".1");
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i + ".1"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(i + ".2")) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives = " + falsePositives, falsePositives < 200);
+        assertEquals(0.01, filter.getExpectedFpr(), 0.005);
+        // About 9.6 bits per ID for a 1% rate.
+        assertTrue(filter.getMemoryBytes() < 13000);
+        // The filter survives a round trip through a file.
+        File file = File.createTempFile("genomes", ".bloom");
+        file.deleteOnExit();
+        filter.write(file);
+        try (InputStream in = new FileInputStream(file)) {
+            GenomeFilter filter2 = GenomeFilter.read(in);
+            assertEquals(10000, filter2.getIdCount());
+            assertEquals(filter.getHashCount(), filter2.getHashCount());
+            assertTrue(filter2.mightContain("83.1"));
+        }
+        assertTrue(filter.getStats().contains("ids=10000"));
+    }
+
+    @Test
+    public void testIds() {
+        assertTrue(GenomeFilter.isValidId("83333.1"));
+        assertFalse(GenomeFilter.isValidId("83333.null"));
+        assertFalse(GenomeFilter.isValidId("83333"));
+        assertFalse(GenomeFilter.isValidId(".1"));
+        assertFalse(GenomeFilter.isValidId(null));
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the parallel genome summary.
+ */
+public class GenomeSummarizerTest {
+
+    /** source that takes 200 milliseconds per answer, except for contigs, which takes 3 seconds */
+    private static final SeedSource SLOW_SOURCE = (action, parameter) -> {
+        try {
+            Thread.sleep("GenomeContigs".equals(action) ? 3000 : 200);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted.");
+        }
+        return action + " " + parameter + ".";
+    };
+
+    @Test
+    public void testParallel() {
+        GenomeSummarizer summarizer = new GenomeSummarizer((action, parameter) -> {
+            if ("GenomeSubsystems".equals(action)) {
+                throw new IOException("Not supported.");
+            }
+            return SLOW_SOURCE.getData("GenomeName", parameter);
+        });
+        long start = System.currentTimeMillis();
+        List<String> parts = summarizer.summarize("83333.1");
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Summary took " + elapsed + " ms.", elapsed < 600);
+        assertEquals(4, parts.size());
+        assertEquals("GenomeName 83333.1.", parts.get(0));
+        assertEquals("The subsystem coverage is not available.", parts.get(3));
+    }
+
+    @Test
+    public void testDeadline() {
+        GenomeSummarizer summarizer = new GenomeSummarizer(SLOW_SOURCE);
+        Deadline.set(System.currentTimeMillis() + 1000);
+        try {
+            long start = System.currentTimeMillis();
+            List<String> parts = summarizer.summarize("83333.1");
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("Summary took " + elapsed + " ms.", elapsed < 1000);
+            assertEquals("GenomeName 83333.1.", parts.get(0));
+            assertEquals("The contig count did not arrive in time.", parts.get(1));
+            assertEquals("GenomeFeatures 83333.1.", parts.get(2));
+            assertEquals("summaries=1, partial=1", summarizer.getStats());
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+/**
+ * Tests for the glossary index.
+ */
+public class GlossaryTest {
+
+    @Test
+    public void testLookups() {
+        Glossary glossary = Glossary.getInstance();
+        String protein = glossary.explain("protein");
+        assertTrue(protein.startsWith("A protein is"));
+        assertEquals(protein, glossary.explain("Proteins"));
+        String subsystem = glossary.explain("subsystem");
+        assertEquals(subsystem, glossary.explain("subsistence"));
+        assertEquals(subsystem, glossary.explain("Sub-Systems"));
+        assertEquals(subsystem, glossary.explain("subsistem"));
+        String bioinformatics = glossary.explain("bioinformatics");
+        assertEquals(bioinformatics, glossary.explain("bio in for matics"));
+        assertEquals(bioinformatics, glossary.explain("bioinfermatics"));
+        assertEquals(glossary.explain("eukaryote"), glossary.explain("yukaryotes"));
+        assertEquals(glossary.explain("contig"), glossary.explain("kontigs"));
+        assertNotNull(glossary.explain("dna"));
+        assertNull(glossary.explain("elephant"));
+        assertNull(glossary.explain("x"));
+    }
+
+    @Test
+    public void testSoundAlikes() {
+        Glossary glossary = Glossary.getInstance();
+        // Short words share phonetic keys with short terms, but they are too far apart to match.
+        assertNull(glossary.explain("run"));
+        assertNull(glossary.explain("ran"));
+        assertNull(glossary.explain("done"));
+        assertNull(glossary.explain("den"));
+        assertEquals(glossary.explain("rna"), glossary.explain("RNAs"));
+        assertEquals(glossary.explain("dna"), glossary.explain("dnaa"));
+    }
+
+    @Test
+    public void testSpeed() {
+        Glossary glossary = Glossary.getInstance();
+        String[] terms = new String[] { "protein", "Amino Acids", "subsistence", "bioinfermatics", "elephant" };
+        for (int i = 0; i < 10000; i++) {
+            glossary.explain(terms[i % terms.length]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; i++) {
+            glossary.explain(terms[i % terms.length]);
+        }
+        double micros = (System.nanoTime() - start) / 10000000.0;
+        assertTrue("Mean glossary lookup time: " + micros + " microseconds.", micros < 1000.0);
+    }
+
+    @Test
+    public void testSlotTypeInSync() throws IOException {
+        String slotFile = new String(Files.readAllBytes(Paths.get("..", "speechAssets", "customSlotTypes", "LIST_OF_TERMS")),
+                StandardCharsets.UTF_8);
+        assertEquals(String.join("\n", Glossary.getInstance().getSlotTerms()), slotFile.trim());
+    }
+
+}
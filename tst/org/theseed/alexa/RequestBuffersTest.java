@@ -0,0 +1,121 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for the reusable request buffers.
+ */
+public class RequestBuffersTest {
+
+    private static final String REQUEST = "{\"text\": \"Eukaryotes \u00e9\u00e8 \u4e2d\u6587\"}";
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        RequestBuffers buffers = RequestBuffers.get();
+        for (int i = 0; i < 3; i++) {
+            String result = echo(buffers);
+            assertEquals(REQUEST, result);
+        }
+        // A huge request must still work.
+        StringBuilder big = new StringBuilder();
+        while (big.length() < RequestBuffers.MAX_RETAINED) {
+            big.append(REQUEST);
+        }
+        InputStream in = buffers.encode(big.toString());
+        OutputStream out = buffers.output();
+        copy(in, out);
+        assertEquals(big.toString(), buffers.decode());
+        assertEquals(REQUEST, echo(buffers));
+    }
+
+    @Test
+    public void testRelease() throws IOException {
+        RequestBuffers buffers = RequestBuffers.get();
+        echo(buffers);
+        int normal = buffers.retainedBytes();
+        // A failed request never decodes its response, so the oversized buffers are released directly.
+        StringBuilder big = new StringBuilder();
+        while (big.length() < RequestBuffers.MAX_RETAINED) {
+            big.append(REQUEST);
+        }
+        copy(buffers.encode(big.toString()), buffers.output());
+        assertTrue(buffers.retainedBytes() > RequestBuffers.MAX_RETAINED);
+        buffers.release();
+        assertEquals(normal, buffers.retainedBytes());
+        assertEquals(REQUEST, echo(buffers));
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        RequestBuffers buffers = RequestBuffers.get();
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 10000) {
+            big.append("{\"padding\":12345}");
+        }
+        byte[] data = big.toString().getBytes("UTF-8");
+        InputStream loaded = buffers.load(new ByteArrayInputStream(data));
+        assertEquals(data.length, buffers.requestLength());
+        assertEquals(big.toString(), new String(buffers.requestBytes(), 0, buffers.requestLength(), "UTF-8"));
+        // A stream from encode is used as-is.
+        InputStream encoded = buffers.encode("{\"hello\":1}");
+        assertTrue(encoded == buffers.load(encoded));
+        assertEquals(11, buffers.requestLength());
+        assertTrue(loaded == encoded);
+    }
+
+    @Test
+    public void testAllocation() throws IOException {
+        final String request = new String(Files.readAllBytes(Paths.get("testAssets", "genometest.json")), "UTF-8");
+        final RequestBuffers buffers = RequestBuffers.get();
+        long lean = AllocationMeter.perRun(1000, () -> {
+            try {
+                InputStream in = buffers.encode(request);
+                copy(in, buffers.output());
+                buffers.decode();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long legacy = AllocationMeter.perRun(1000, () -> {
+            try {
+                InputStream in = new ByteArrayInputStream(request.getBytes());
+                OutputStream out = new ByteArrayOutputStream();
+                copy(in, out);
+                new String(out.toString());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // Without allocation counters in this JVM, the test is reported as skipped.
+        Assume.assumeTrue(lean >= 0);
+        assertTrue("lean = " + lean + ", legacy = " + legacy, lean < legacy);
+    }
+
+    private static String echo(RequestBuffers buffers) throws IOException {
+        InputStream in = buffers.encode(REQUEST);
+        OutputStream out = buffers.output();
+        copy(in, out);
+        return buffers.decode();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        int c = in.read();
+        while (c >= 0) {
+            out.write(c);
+            c = in.read();
+        }
+    }
+
+}
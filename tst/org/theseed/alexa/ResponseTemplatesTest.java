@@ -0,0 +1,72 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the pre-serialized static responses.
+ */
+public class ResponseTemplatesTest {
+
+    private static final String APP_ID = "amzn1.echo-sdk-ams.app.d32becb3-600b-49d2-96ed-8cc2e7734ca8";
+
+    @Test
+    public void testTemplates() throws IOException {
+        SeedQuerySpeechlet speechlet = new SeedQuerySpeechlet(new TestSource());
+        Set<String> ids = Collections.singleton(APP_ID);
+        ResponseTemplates templates = new ResponseTemplates(speechlet, ids);
+        String response = respond(templates, new String(Files.readAllBytes(Paths.get("testAssets", "launchtest.json")),
+                StandardCharsets.UTF_8));
+        assertTrue(response, response.contains("Welcome to SEED."));
+        assertTrue(response, response.contains("\"sessionAttributes\":{\n        }"));
+        // A glossary term, with session attributes spliced in.
+        String request = "{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"s1\",\"application\":"
+                + "{\"applicationId\":\"" + APP_ID + "\"},\"attributes\":{\"last\":{\"genome\":\"83333.1\"}}},"
+                + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"r1\",\"intent\":{\"name\":\"TextIntent\","
+                + "\"slots\":{\"Term\":{\"name\":\"Term\",\"value\":\"genomes\"}}}}}";
+        response = respond(templates, request);
+        assertTrue(response, response.contains("\"sessionAttributes\":{\"last\":{\"genome\":\"83333.1\"}}"));
+        assertTrue(response, response.contains(Glossary.getInstance().explain("genome")));
+        // Braces and escaped quotes inside strings do not end the attributes early.
+        String attributes = "{ \"note\" : \"a } b \\\" {\", \"n\" : { } }";
+        response = respond(templates, request.replace("{\"last\":{\"genome\":\"83333.1\"}}", attributes));
+        assertTrue(response, response.endsWith("\"sessionAttributes\":" + attributes + "}"));
+        // Requests that are not static, or are for another skill, are passed on.
+        assertEquals("", respond(templates, request.replace("TextIntent", "CountIntent")));
+        assertEquals("", respond(templates, request.replace(APP_ID, "amzn1.other")));
+        assertEquals("", respond(templates, request.replace("genomes", "no such term at all")));
+        assertEquals("", respond(templates, "{\"version\":"));
+        assertEquals(3, templates.getHitCount());
+    }
+
+    @Test
+    public void testHandler() throws IOException {
+        // The handler answers static requests from its templates before they reach the SDK pipeline.
+        SeedQueryHandler handler = new SeedQueryHandler(new TestSource());
+        String request = new String(Files.readAllBytes(Paths.get("testAssets", "launchtest.json")),
+                StandardCharsets.UTF_8);
+        assertTrue(handler.handleRequest(request, null).contains("Welcome to SEED."));
+        assertTrue(handler.getTemplateStats(), handler.getTemplateStats().contains("hits=1,"));
+    }
+
+    private static String respond(ResponseTemplates templates, String request) throws IOException {
+        byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean answered = templates.respond(bytes, bytes.length, out);
+        assertEquals(answered, out.size() > 0);
+        assertFalse(answered && out.size() < 20);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SEED back end.  The HTTP client is replaced by one that records its requests.
+ */
+public class SeedBackendTest {
+
+    /** client that answers from memory and records the requests */
+    private static class FakeClient extends SeedClient {
+        private final List<String> requests = new ArrayList<String>();
+        private boolean batches = true;
+        private boolean batchFailing = false;
+
+        private FakeClient() {
+            super("http://localhost:1/svr.cgi", 2, 100, 100, 1000);
+        }
+
+        @Override
+        public String getData(String action, String parameter) {
+            requests.add(parameter);
+            return (parameter.startsWith("999.") ? SeedResponse.NO_INFO : "Single " + parameter + ".");
+        }
+
+        @Override
+        public Map<String, String> getFields(String action, String parameter, Collection<String> wanted)
+                throws IOException {
+            requests.add(parameter);
+            if (batchFailing) {
+                throw new IOException("Batch failure.");
+            }
+            Map<String, String> retVal = new HashMap<String, String>();
+            if (! batches) {
+                retVal.put(SeedResponse.TEXT, "Unknown genome.");
+            } else {
+                for (String item : parameter.split(",")) {
+                    retVal.put(item, "Batch " + item + ".");
+                }
+            }
+            return retVal;
+        }
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        FakeClient client = new FakeClient();
+        SeedBackend backend = new SeedBackend(client);
+        assertEquals("Single 83333.1.", backend.getData("GenomeIntent", "83333.1"));
+        Map<String, String> answers = backend.getBatch("GenomeIntent", Arrays.asList("100226.1", "83333.1", "511145.12"));
+        assertEquals(Arrays.asList("100226.1", "83333.1", "511145.12"), new ArrayList<String>(answers.keySet()));
+        assertEquals("Single 83333.1.", answers.get("83333.1"));
+        assertEquals("Batch 511145.12.", answers.get("511145.12"));
+        // One request for the single query, and one for the two genomes that were not cached.
+        assertEquals(Arrays.asList("83333.1", "100226.1,511145.12"), client.requests);
+        assertEquals(1, backend.getBatchCount());
+        // The batch answers are now in the cache.
+        assertEquals("Batch 100226.1.", backend.getData("GenomeIntent", "100226.1"));
+        assertEquals(2, client.requests.size());
+        // A server without batch support gets the queries one at a time.
+        client.batches = false;
+        answers = backend.getBatch("GenomeIntent", Arrays.asList("1.1", "2.2"));
+        assertEquals("Single 2.2.", answers.get("2.2"));
+        assertEquals(Arrays.asList("83333.1", "100226.1,511145.12", "1.1,2.2", "1.1", "2.2"), client.requests);
+    }
+
+    @Test
+    public void testBatchFailures() throws IOException {
+        FakeClient client = new FakeClient();
+        client.batchFailing = true;
+        SeedBackend backend = new SeedBackend(client);
+        for (int i = 0; i < 5; i++) {
+            Map<String, String> answers = backend.getBatch("GenomeIntent", Arrays.asList(i + ".1", i + ".2"));
+            assertEquals("Single " + i + ".2.", answers.get(i + ".2"));
+        }
+        assertEquals(15, client.requests.size());
+        // The batch breaker is open, so the next batch goes straight to the single queries.
+        assertEquals(SeedCircuitBreaker.State.OPEN, backend.getBatchBreaker().getState());
+        backend.getBatch("GenomeIntent", Arrays.asList("5.1", "5.2"));
+        assertEquals(Arrays.asList("5.1", "5.2"), client.requests.subList(15, 17));
+        assertEquals(SeedCircuitBreaker.State.CLOSED, backend.getBreaker().getState());
+    }
+
+    @Test
+    public void testUnknownGenomes() throws IOException {
+        FakeClient client = new FakeClient();
+        SeedBackend backend = new SeedBackend(client);
+        assertFalse(backend.isKnownGenome("83333.null"));
+        assertFalse(backend.isKnownGenome(null));
+        assertTrue(backend.isKnownGenome("999.1"));
+        // An empty answer means the SEED does not know the genome, and it is remembered.
+        assertEquals(SeedResponse.NO_INFO, backend.getData("GenomeIntent", "999.1"));
+        assertFalse(backend.isKnownGenome("999.1"));
+        assertTrue(backend.isKnownGenome("83333.1"));
+        assertEquals(1, backend.getMissCache().size());
+        // Count queries are not genome misses.
+        backend.getData("CountIntent", "999.2");
+        assertEquals(1, backend.getMissCache().size());
+        // Neither are empty answers to the other genome actions.
+        assertEquals(SeedResponse.NO_INFO, backend.getData("GenomeSubsystems", "999.3"));
+        assertTrue(backend.isKnownGenome("999.3"));
+        assertEquals(1, backend.getMissCache().size());
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SEED answer cache.
+ */
+public class SeedCacheTest {
+
+    /**
+     * A cache whose clock is controlled by the test.
+     */
+    private static class ClockCache extends SeedCache {
+
+        private long now = 1000;
+
+        public ClockCache(SeedSource source, int maxSize, long defaultTtl, long staleWindow) {
+            super(source, maxSize, defaultTtl, staleWindow);
+        }
+
+        @Override
+        protected long currentTime() {
+            return now;
+        }
+
+        public void advance(long millis) {
+            now += millis;
+        }
+
+    }
+
+    @Test
+    public void testHitsAndEviction() throws IOException {
+        TestSource source = new TestSource();
+        SeedCache cache = new ClockCache(source, 2, 100, 0);
+        assertEquals("CountIntent:genomes", cache.getData("CountIntent", "genomes"));
+        assertEquals("CountIntent:genomes", cache.getData("CountIntent", "genomes"));
+        assertEquals(1, source.getCalls());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.getData("CountIntent", "roles");
+        // This makes "genomes" the most recently used, so "roles" gets evicted.
+        cache.getData("CountIntent", "genomes");
+        cache.getData("GenomeIntent", "83333.1");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictCount());
+        cache.getData("CountIntent", "genomes");
+        assertEquals(3, source.getCalls());
+        cache.getData("CountIntent", "roles");
+        assertEquals(4, source.getCalls());
+    }
+
+    @Test
+    public void testPeekAndPut() throws IOException {
+        TestSource source = new TestSource();
+        ClockCache cache = new ClockCache(source, 10, 100, 0);
+        assertNull(cache.peek("GenomeIntent", "83333.1"));
+        cache.put("GenomeIntent", "83333.1", "Batch answer.");
+        assertEquals("Batch answer.", cache.peek("GenomeIntent", "83333.1"));
+        assertEquals("Batch answer.", cache.getData("GenomeIntent", "83333.1"));
+        assertEquals(0, source.getCalls());
+        assertEquals(0, cache.getMissCount());
+        cache.advance(500);
+        assertNull(cache.peek("GenomeIntent", "83333.1"));
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        TestSource source = new TestSource();
+        ClockCache cache = new ClockCache(source, 10, 100, 0);
+        cache.setTtl("GenomeIntent", 1000);
+        cache.getData("CountIntent", "genomes");
+        cache.getData("GenomeIntent", "83333.1");
+        cache.advance(500);
+        cache.getData("CountIntent", "genomes");
+        cache.getData("GenomeIntent", "83333.1");
+        assertEquals(3, source.getCalls());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testStaleRefresh() throws Exception {
+        TestSource source = new TestSource();
+        ClockCache cache = new ClockCache(source, 10, 100, 1000);
+        cache.getData("CountIntent", "genomes");
+        cache.advance(500);
+        // The stale answer comes back at once and a refresh is queued.
+        assertEquals("CountIntent:genomes", cache.getData("CountIntent", "genomes"));
+        assertEquals(1, cache.getStaleCount());
+        for (int i = 0; i < 100 && cache.getRefreshCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(2, source.getCalls());
+        cache.getData("CountIntent", "genomes");
+        assertEquals(1, cache.getHitCount());
+        // Past the stale window, the request has to wait.
+        cache.advance(5000);
+        cache.getData("CountIntent", "genomes");
+        assertEquals(2, cache.getMissCount());
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.Test;
+
+/**
+ * Tests for the SEED circuit breaker.
+ */
+public class SeedCircuitBreakerTest {
+
+    /**
+     * A circuit breaker whose clock is controlled by the test.
+     */
+    private static class ClockBreaker extends SeedCircuitBreaker {
+
+        private long now = 1000;
+
+        public ClockBreaker(SeedSource source, int threshold, long openTime) {
+            super(source, threshold, openTime);
+        }
+
+        @Override
+        protected long currentTime() {
+            return now;
+        }
+
+        public void advance(long millis) {
+            now += millis;
+        }
+
+    }
+
+    @Test
+    public void testTransitions() throws IOException {
+        TestSource source = new TestSource();
+        ClockBreaker breaker = new ClockBreaker(source, 3, 1000);
+        assertEquals("CountIntent:roles", breaker.getData("CountIntent", "roles"));
+        source.setFailing(true);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(fails(breaker));
+        }
+        assertEquals(SeedCircuitBreaker.State.OPEN, breaker.getState());
+        // While open, requests fail without reaching the source.
+        int calls = source.getCalls();
+        try {
+            breaker.getData("CountIntent", "roles");
+            assertTrue("Open circuit let a request through.", false);
+        } catch (SeedUnavailableException e) {
+            assertEquals(SeedUnavailableException.UNAVAILABLE, e.getMessage());
+        }
+        assertEquals(calls, source.getCalls());
+        assertEquals(1, breaker.getRejectCount());
+        // After the cool-down, a failed trial re-opens the circuit.
+        breaker.advance(1000);
+        assertTrue(fails(breaker));
+        assertEquals(SeedCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getHalfOpenCount());
+        // A successful trial closes it.
+        breaker.advance(1000);
+        source.setFailing(false);
+        assertEquals("CountIntent:roles", breaker.getData("CountIntent", "roles"));
+        assertEquals(SeedCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+        assertEquals(1, breaker.getCloseCount());
+    }
+
+    @Test
+    public void testRuntimeFailure() throws IOException {
+        final boolean[] broken = { true };
+        ClockBreaker breaker = new ClockBreaker((action, parameter) -> {
+            if (broken[0]) {
+                throw new IllegalStateException("Test failure.");
+            }
+            return action + ":" + parameter;
+        }, 1, 1000);
+        assertTrue(fails(breaker));
+        assertEquals(SeedCircuitBreaker.State.OPEN, breaker.getState());
+        // A runtime failure during the half-open trial re-opens the circuit instead of leaving it half-open.
+        breaker.advance(1000);
+        assertTrue(fails(breaker));
+        assertEquals(SeedCircuitBreaker.State.OPEN, breaker.getState());
+        breaker.advance(1000);
+        broken[0] = false;
+        assertEquals("CountIntent:roles", breaker.getData("CountIntent", "roles"));
+        assertEquals(SeedCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testClientErrors() throws IOException {
+        final int[] status = { 404 };
+        ClockBreaker breaker = new ClockBreaker((action, parameter) -> {
+            throw new HttpResponseException(status[0], "Test failure.");
+        }, 2, 1000);
+        // Answers for unknown genomes come from a healthy server and leave the circuit closed.
+        for (int i = 0; i < 5; i++) {
+            assertTrue(fails(breaker));
+        }
+        assertEquals(SeedCircuitBreaker.State.CLOSED, breaker.getState());
+        status[0] = 503;
+        assertTrue(fails(breaker));
+        assertTrue(fails(breaker));
+        assertEquals(SeedCircuitBreaker.State.OPEN, breaker.getState());
+        // A 4xx answer to the half-open trial closes the circuit.
+        breaker.advance(1000);
+        status[0] = 404;
+        assertTrue(fails(breaker));
+        assertEquals(SeedCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private static boolean fails(SeedSource source) {
+        boolean retVal = false;
+        try {
+            source.getData("CountIntent", "roles");
+        } catch (IOException | RuntimeException e) {
+            retVal = true;
+        }
+        return retVal;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests for the concurrent query coalescer.
+ */
+public class SeedCoalescerTest {
+
+    @Test
+    public void testSharedFetch() throws Exception {
+        TestSource source = new TestSource();
+        source.setDelay(200);
+        SeedCoalescer coalescer = new SeedCoalescer(source);
+        List<Future<String>> results = runAll(coalescer, 10);
+        for (Future<String> result : results) {
+            assertEquals("CountIntent:proteins", result.get());
+        }
+        assertEquals(1, source.getCalls());
+        assertEquals(9, coalescer.getSharedCount());
+        assertEquals(0, coalescer.getInFlight());
+        // Once the fetch is done, a new request fetches again.
+        coalescer.getData("CountIntent", "proteins");
+        assertEquals(2, source.getCalls());
+    }
+
+    @Test
+    public void testSharedError() throws Exception {
+        TestSource source = new TestSource();
+        source.setDelay(200);
+        source.setFailing(true);
+        SeedCoalescer coalescer = new SeedCoalescer(source);
+        List<Future<String>> results = runAll(coalescer, 5);
+        for (Future<String> result : results) {
+            try {
+                result.get();
+                assertTrue("Error not propagated.", false);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(1, source.getCalls());
+    }
+
+    /**
+     * @return the futures for a set of identical concurrent queries
+     *
+     * @param coalescer    coalescer to query
+     * @param count        number of queries to run
+     */
+    private static List<Future<String>> runAll(final SeedCoalescer coalescer, int count) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(() -> coalescer.getData("CountIntent", "proteins"));
+        }
+        List<Future<String>> retVal = executor.invokeAll(tasks);
+        executor.shutdown();
+        return retVal;
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the hedging layer.
+ */
+public class SeedHedgerTest {
+
+    @Test
+    public void testHedge() throws IOException {
+        // The first call to this source is slow and the rest are fast.
+        final AtomicInteger calls = new AtomicInteger();
+        SeedSource source = (action, parameter) -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted.");
+                }
+                return "slow";
+            }
+            return "fast";
+        };
+        SeedHedger hedger = new SeedHedger(source, 95, 10, 50, 4);
+        long start = System.currentTimeMillis();
+        assertEquals("fast", hedger.getData("GenomeIntent", "83333.1"));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    public void testLimitedHedges() throws IOException, InterruptedException {
+        TestSource source = new TestSource();
+        source.setDelay(200);
+        SeedHedger hedger = new SeedHedger(source, 95, 10, 50, 4);
+        // The primary query holds the only admission slot, so no hedge is sent.
+        SeedLimiter limiter = new SeedLimiter(hedger, 1, 1, 1, 5000, 0.9, 0, 0);
+        hedger.setLimiter(limiter);
+        assertEquals("GenomeIntent:83333.1", limiter.getData("GenomeIntent", "83333.1"));
+        assertEquals(0, hedger.getHedgeCount());
+        assertEquals(1, hedger.getSkipCount());
+        assertEquals(1, source.getCalls());
+        // With a free slot, the hedge is sent and its slot is returned.
+        limiter = new SeedLimiter(hedger, 2, 2, 2, 5000, 0.9, 0, 0);
+        hedger.setLimiter(limiter);
+        assertEquals("GenomeIntent:83333.1", limiter.getData("GenomeIntent", "83333.1"));
+        assertEquals(1, hedger.getHedgeCount());
+        boolean free = false;
+        for (int i = 0; i < 100 && ! free; i++) {
+            Thread.sleep(10);
+            free = limiter.getMetricLine().contains(" in_flight=0 ");
+        }
+        assertTrue(limiter.getMetricLine(), free);
+    }
+
+    @Test
+    public void testDeadline() throws IOException {
+        TestSource source = new TestSource();
+        source.setDelay(1000);
+        SeedHedger hedger = new SeedHedger(source, 95, 10, 5000, 4);
+        Deadline.set(System.currentTimeMillis() + 200);
+        long start = System.currentTimeMillis();
+        try {
+            hedger.getData("GenomeIntent", "83333.1");
+            assertTrue("Deadline not enforced.", false);
+        } catch (SeedUnavailableException e) {
+            assertEquals(SeedUnavailableException.TIMEOUT, e.getMessage());
+        } finally {
+            Deadline.clear();
+        }
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertEquals(1, hedger.getTimeoutCount());
+        assertEquals(0, hedger.getHedgeCount());
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.Test;
+
+/**
+ * Tests for the SEED admission controller.
+ */
+public class SeedLimiterTest {
+
+    @Test
+    public void testQueue() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        SeedSource blocked = (action, parameter) -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted.");
+            }
+            return action + ":" + parameter;
+        };
+        final SeedLimiter limiter = new SeedLimiter(blocked, 1, 1, 1, 10000, 0.9, 1, 5000);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> query(limiter, "1"));
+        while (limiter.getMetricLine().contains("in_flight=0")) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> query(limiter, "2"));
+        while (limiter.getQueueDepth() == 0) {
+            Thread.sleep(5);
+        }
+        // The queue is full, so the third query is rejected at once.
+        try {
+            limiter.getData("GenomeIntent", "3");
+            fail("Query admitted with a full queue.");
+        } catch (SeedUnavailableException e) {
+            assertEquals(SeedUnavailableException.BUSY, e.getMessage());
+        }
+        assertEquals(1, limiter.getRejectCount());
+        gate.countDown();
+        assertEquals("GenomeIntent:1", first.get());
+        assertEquals("GenomeIntent:2", second.get());
+        assertTrue(limiter.getMetricLine(), limiter.getMetricLine().contains("queue_max=1 admitted=2 queued=1"));
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws IOException {
+        TestSource source = new TestSource();
+        SeedLimiter limiter = new SeedLimiter(source, 4, 2, 10, 1000, 0.5, 4, 100);
+        for (int i = 0; i < 200; i++) {
+            limiter.getData("CountIntent", "genomes");
+        }
+        assertEquals(10, limiter.getLimit());
+        // Failures cut the limit down to the minimum.
+        source.setFailing(true);
+        for (int i = 0; i < 5; i++) {
+            try {
+                limiter.getData("CountIntent", "genomes");
+            } catch (IOException e) {
+                // This is expected.
+            }
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testNeutralFailures() throws IOException {
+        SeedLimiter limiter = new SeedLimiter((action, parameter) -> {
+            if (parameter.equals("open")) {
+                throw new SeedUnavailableException(SeedUnavailableException.UNAVAILABLE);
+            }
+            throw new HttpResponseException(404, "Not Found");
+        }, 8, 2, 10, 1000, 0.5, 4, 100);
+        // Fast failures from an open circuit and 4xx answers do not cut the limit.
+        for (int i = 0; i < 5; i++) {
+            query(limiter, "open");
+            query(limiter, "404");
+        }
+        assertTrue("limit = " + limiter.getLimit(), limiter.getLimit() >= 8);
+    }
+
+    /**
+     * @return the answer to a genome query, or the error message
+     *
+     * @param limiter     admission controller to query
+     * @param genomeId    genome to ask about
+     */
+    private static String query(SeedLimiter limiter, String genomeId) {
+        String retVal;
+        try {
+            retVal = limiter.getData("GenomeIntent", genomeId);
+        } catch (IOException e) {
+            retVal = e.getMessage();
+        }
+        return retVal;
+    }
+
+}
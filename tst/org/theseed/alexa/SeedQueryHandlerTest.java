@@ -33,7 +33,7 @@ public class SeedQueryHandlerTest {
     public void testSeedQueryHandler() {
         Context ctx = createContext();
         try {
-            byte[] encoded = Files.readAllBytes(Paths.get("testAssets\\genometest.json"));
+            byte[] encoded = Files.readAllBytes(Paths.get("testAssets", "genometest.json"));
             String inString = new String(encoded);
             String outString = handler.handleRequest(inString, ctx);
             System.out.println(outString);
@@ -46,7 +46,7 @@ public class SeedQueryHandlerTest {
     public void testSeedCountQueryHandler() {
         Context ctx = createContext();
         try {
-            byte[] encoded = Files.readAllBytes(Paths.get("testAssets\\proteintest.json"));
+            byte[] encoded = Files.readAllBytes(Paths.get("testAssets", "proteintest.json"));
             String inString = new String(encoded);
             String outString = handler.handleRequest(inString, ctx);
             System.out.println(outString);
@@ -60,7 +60,7 @@ public class SeedQueryHandlerTest {
     public void testSeedPegQueryHandler() {
         Context ctx = createContext();
         try {
-            byte[] encoded = Files.readAllBytes(Paths.get("testAssets\\pegtest.json"));
+            byte[] encoded = Files.readAllBytes(Paths.get("testAssets", "pegtest.json"));
             String inString = new String(encoded);
             String outString = handler.handleRequest(inString, ctx);
             System.out.println(outString);
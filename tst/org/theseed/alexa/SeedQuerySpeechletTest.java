@@ -0,0 +1,148 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+
+/**
+ * Tests for intent dispatch in the speechlet.
+ */
+public class SeedQuerySpeechletTest {
+
+    @Test
+    public void testDispatch() throws SpeechletException {
+        TestSource source = new TestSource();
+        SeedQuerySpeechlet speechlet = new SeedQuerySpeechlet(source);
+        Session session = Session.builder().withSessionId("test.session").build();
+        long genomeCalls = IntentMetrics.get("GenomeIntent").getCallCount();
+        long backendCalls = IntentMetrics.get("GenomeIntent").getBackendTime().getCount();
+        String text = speak(speechlet.onIntent(request("GenomeIntent", "TaxonId", "83333", "Version", "1"), session));
+        assertEquals(1, source.getCalls());
+        assertTrue(text, text.contains("83333.1"));
+        assertEquals(genomeCalls + 1, IntentMetrics.get("GenomeIntent").getCallCount());
+        assertEquals(backendCalls + 1, IntentMetrics.get("GenomeIntent").getBackendTime().getCount());
+        // A multi-genome intent answers all the genomes.
+        text = speak(speechlet.onIntent(request("GenomeListIntent", "TaxonIdA", "83333", "VersionA", "1",
+                "TaxonIdB", "100226", "VersionB", "1"), session));
+        assertEquals("GenomeIntent:83333.1 GenomeIntent:100226.1", text);
+        // A malformed genome ID is rejected without a query.
+        int calls = source.getCalls();
+        text = speak(speechlet.onIntent(request("GenomeIntent", "TaxonId", "83333", "Version", null), session));
+        assertEquals("I am sorry, but I don't know that genome.", text);
+        assertEquals(calls, source.getCalls());
+        // An unknown intent gets a polite answer.
+        long unknownCalls = IntentMetrics.get("Unknown").getCallCount();
+        text = speak(speechlet.onIntent(request("FrobnicateIntent"), session));
+        assertTrue(text, text.startsWith("I am sorry, but I don't know how to do that."));
+        assertEquals(unknownCalls + 1, IntentMetrics.get("Unknown").getCallCount());
+        assertTrue(IntentMetrics.getReport().contains("metric=intent name=GenomeIntent "));
+    }
+
+    @Test
+    public void testUnrecorded() throws SpeechletException {
+        // The speechlet used for priming answers normally but leaves the intent metrics alone.
+        SeedQuerySpeechlet speechlet = new SeedQuerySpeechlet(new TestSource(), false);
+        Session session = Session.builder().withSessionId("test.session").build();
+        long countCalls = IntentMetrics.get("CountIntent").getCallCount();
+        long unknownCalls = IntentMetrics.get("Unknown").getCallCount();
+        String text = speak(speechlet.onIntent(request("CountIntent", "ObjectType", "genomes"), session));
+        assertEquals("CountIntent:genomes", text);
+        speechlet.onIntent(request("FrobnicateIntent"), session);
+        assertEquals(countCalls, IntentMetrics.get("CountIntent").getCallCount());
+        assertEquals(unknownCalls, IntentMetrics.get("Unknown").getCallCount());
+    }
+
+    @Test
+    public void testFollowUp() throws SpeechletException {
+        TestSource source = new TestSource();
+        SeedQuerySpeechlet speechlet = new SeedQuerySpeechlet(source);
+        Session session = Session.builder().withSessionId("test.session").build();
+        // With no genome in the session, a follow-up asks which one.
+        String text = speak(speechlet.onIntent(request("GenomeFollowUpIntent", "Detail", "features"), session));
+        assertTrue(text, text.contains("which genome"));
+        assertEquals(0, source.getCalls());
+        SpeechletResponse response = speechlet.onIntent(request("GenomeIntent", "TaxonId", "83333", "Version", "1"), session);
+        assertFalse(response.getShouldEndSession());
+        assertEquals(1, source.getCalls());
+        // The follow-up resolves against the remembered genome.
+        text = speak(speechlet.onIntent(request("GenomeFollowUpIntent", "Detail", "Features"), session));
+        assertEquals("GenomeFeatures:83333.1", text);
+        assertEquals(2, source.getCalls());
+        // Answers already in the session do not go back to the SEED.
+        text = speak(speechlet.onIntent(request("GenomeFollowUpIntent", "Detail", "features"), session));
+        assertEquals("GenomeFeatures:83333.1", text);
+        text = speak(speechlet.onIntent(request("GenomeIntent", "TaxonId", "83333", "Version", "1"), session));
+        assertEquals("GenomeIntent:83333.1", text);
+        assertEquals(2, source.getCalls());
+        // The summary queries only the parts not already known.
+        text = speak(speechlet.onIntent(request("GenomeSummaryIntent", "TaxonId", "83333", "Version", "1"), session));
+        assertEquals(5, source.getCalls());
+        assertTrue(text, text.contains("GenomeFeatures:83333.1"));
+        text = speak(speechlet.onIntent(request("GenomeFollowUpIntent", "Detail", "contigs"), session));
+        assertEquals("GenomeContigs:83333.1", text);
+        assertEquals(5, source.getCalls());
+        // A new genome replaces the old one.
+        speechlet.onIntent(request("GenomeIntent", "TaxonId", "100226", "Version", "1"), session);
+        text = speak(speechlet.onIntent(request("GenomeFollowUpIntent", "Detail", "contigs"), session));
+        assertEquals("GenomeContigs:100226.1", text);
+        assertEquals(7, source.getCalls());
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        long p50 = histogram.percentile(50);
+        assertTrue("p50 = " + p50, p50 >= 50000 && p50 <= 50000 * 1.07);
+        long p99 = histogram.percentile(99);
+        assertTrue("p99 = " + p99, p99 >= 99000 && p99 <= 100000);
+        for (long v = 0; v < 1000000; v = v * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(v + " above bucket", v <= LatencyHistogram.bucketValue(bucket));
+            assertTrue(v + " below bucket", bucket == 0 || v > LatencyHistogram.bucketValue(bucket - 1));
+        }
+    }
+
+    /**
+     * @return an intent request with the specified slots
+     *
+     * @param name     intent name
+     * @param slots    slot names and values, alternating
+     */
+    protected static IntentRequest request(String name, String... slots) {
+        Map<String, Slot> slotMap = new HashMap<String, Slot>();
+        for (int i = 0; i < slots.length; i += 2) {
+            slotMap.put(slots[i], Slot.builder().withName(slots[i]).withValue(slots[i + 1]).build());
+        }
+        Intent intent = Intent.builder().withName(name).withSlots(slotMap).build();
+        return IntentRequest.builder().withRequestId("test.request").withIntent(intent).build();
+    }
+
+    /**
+     * @return the spoken text of a response
+     *
+     * @param response    response to examine
+     */
+    protected static String speak(SpeechletResponse response) {
+        return ((PlainTextOutputSpeech) response.getOutputSpeech()).getText();
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SEED response parser.
+ */
+public class SeedResponseTest {
+
+    /** stream that counts the bytes read from it */
+    private static class CountingStream extends FilterInputStream {
+        private int count;
+
+        private CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int retVal = super.read();
+            if (retVal >= 0) {
+                count++;
+            }
+            return retVal;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int retVal = super.read(b, off, len);
+            if (retVal > 0) {
+                count += retVal;
+            }
+            return retVal;
+        }
+    }
+
+    @Test
+    public void testOneLine() throws IOException {
+        assertEquals("Genome 83333.1 is Escherichia coli \u00e9t\u00e9.",
+                SeedResponse.readLine(stream("Genome 83333.1 is Escherichia coli \u00e9t\u00e9.\nextra\n")));
+        assertEquals(SeedResponse.NO_INFO, SeedResponse.readLine(stream("")));
+        // A one-line answer to a fields request comes back as the text field.
+        Map<String, String> fields = SeedResponse.readFields(stream("There are 5 genomes.\n"), null);
+        assertEquals(1, fields.size());
+        assertEquals("There are 5 genomes.", fields.get(SeedResponse.TEXT));
+    }
+
+    @Test
+    public void testFields() throws IOException {
+        String body = "name\tEscherichia coli\ncontigs\t1\nfeatures\t4592\n\nignored\tvalue\n";
+        Map<String, String> fields = SeedResponse.readFields(stream(body), null);
+        assertEquals(3, fields.size());
+        assertEquals("4592", fields.get("features"));
+        fields = SeedResponse.readFields(stream(body), Arrays.asList("name", "features"));
+        assertEquals(2, fields.size());
+        assertEquals("Escherichia coli", fields.get("name"));
+    }
+
+    @Test
+    public void testEarlyStop() throws IOException {
+        StringBuilder body = new StringBuilder("name\tEscherichia coli\n");
+        for (int i = 0; i < 10000; i++) {
+            body.append("padding").append(i).append("\tvalue\n");
+        }
+        byte[] raw = body.toString().getBytes(StandardCharsets.UTF_8);
+        CountingStream counter = new CountingStream(new ByteArrayInputStream(raw));
+        Map<String, String> fields = SeedResponse.readFields(counter, Arrays.asList("name"));
+        assertEquals("Escherichia coli", fields.get("name"));
+        assertTrue("Read " + counter.count + " bytes.", counter.count < raw.length / 10);
+        // Compressed bodies are also read as a stream.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream zipper = new GZIPOutputStream(buffer)) {
+            zipper.write(raw);
+        }
+        byte[] zipped = buffer.toByteArray();
+        assertTrue(zipped.length < raw.length / 4);
+        counter = new CountingStream(new ByteArrayInputStream(zipped));
+        fields = SeedResponse.readFields(new GZIPInputStream(counter, 512), Arrays.asList("name"));
+        assertEquals("Escherichia coli", fields.get("name"));
+        assertTrue("Read " + counter.count + " compressed bytes.", counter.count < zipped.length);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+
+/**
+ * Tests for the standalone skill server.  The skill handler is replaced by one that
+ * echoes the request.
+ */
+public class SeedServerTest {
+
+    private static final RequestStreamHandler ECHO = (in, out, context) -> {
+        int c = in.read();
+        while (c >= 0) {
+            out.write(c);
+            c = in.read();
+        }
+    };
+
+    @Test
+    public void testServer() throws IOException {
+        SeedServer server = new SeedServer(ECHO, 0, 10, false);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            assertEquals("OK", call(base + "/health", null, 200));
+            assertEquals("{\"hello\":1}", call(base + "/", "{\"hello\":1}", 200));
+            call(base + "/", null, 405);
+            String metrics = call(base + "/metrics", null, 200);
+            assertTrue(metrics.contains("requests 1\n"));
+            assertTrue(metrics.contains("inFlight 0\n"));
+            // The echo handler never creates the shared back end, and the metrics do not either.
+            assertEquals(SeedBackend.getExistingInstance() != null, metrics.contains("backend "));
+        } finally {
+            server.shutdown(1);
+        }
+    }
+
+    @Test
+    public void testVerification() throws IOException {
+        SeedServer server = new SeedServer(ECHO, 0, 10, true);
+        server.start();
+        try {
+            // An unsigned request never reaches the handler.
+            String base = "http://localhost:" + server.getPort();
+            assertEquals("Invalid request.", call(base + "/", "{\"hello\":1}", 400));
+            assertTrue(server.getMetrics().contains("invalid 1\n"));
+        } finally {
+            server.shutdown(1);
+        }
+    }
+
+    private static String call(String url, String body, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(expectedStatus, connection.getResponseCode());
+        InputStream in = (expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int c = in.read();
+        while (c >= 0) {
+            buffer.write(c);
+            c = in.read();
+        }
+        in.close();
+        return buffer.toString("UTF-8");
+    }
+
+}
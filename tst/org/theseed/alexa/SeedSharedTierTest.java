@@ -0,0 +1,97 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * Tests for the shared cache tier and the file-based shared cache.
+ */
+public class SeedSharedTierTest {
+
+    /** shared cache that never answers */
+    private static class StuckCache implements SharedCache {
+
+        @Override
+        public CompletableFuture<Entry> lookup(String key) {
+            return new CompletableFuture<Entry>();
+        }
+
+        @Override
+        public void store(String key, Entry entry) {
+        }
+
+        @Override
+        public String getStats() {
+            return "stuck";
+        }
+
+    }
+
+    @Test
+    public void testFileCache() throws Exception {
+        File dir = Files.createTempDirectory("shared").toFile();
+        FileSharedCache shared = new FileSharedCache(dir);
+        assertNull(shared.lookup("GenomeIntent\t83333.1").get());
+        // Two instances share the directory.
+        TestSource source1 = new TestSource();
+        SeedSharedTier tier1 = new SeedSharedTier(source1, shared, 1000, 1, action -> 60000L);
+        assertEquals("GenomeIntent:83333.1", tier1.getData("GenomeIntent", "83333.1"));
+        assertEquals(1, source1.getCalls());
+        TestSource source2 = new TestSource();
+        SeedSharedTier tier2 = new SeedSharedTier(source2, new FileSharedCache(dir), 1000, 1, action -> 60000L);
+        // The store is asynchronous, so wait for it to land.
+        for (int i = 0; i < 100 && shared.lookup("GenomeIntent\t83333.1").get() == null; i++) {
+            Thread.sleep(10);
+        }
+        String answer = tier2.getData("GenomeIntent", "83333.1");
+        assertEquals("GenomeIntent:83333.1", answer);
+        assertEquals(0, source2.getCalls());
+        // An instance with a different version ignores the entry.
+        TestSource source3 = new TestSource();
+        SeedSharedTier tier3 = new SeedSharedTier(source3, shared, 1000, 2, action -> 60000L);
+        tier3.getData("GenomeIntent", "83333.1");
+        assertEquals(1, source3.getCalls());
+    }
+
+    @Test
+    public void testExpiryLimit() throws Exception {
+        File dir = Files.createTempDirectory("shared").toFile();
+        FileSharedCache shared = new FileSharedCache(dir, 1, 4);
+        long expires = System.currentTimeMillis() + 5000;
+        shared.store("GenomeIntent\t83333.1", new SharedCache.Entry(1, expires, "Shared answer."));
+        for (int i = 0; i < 100 && shared.lookup("GenomeIntent\t83333.1").get() == null; i++) {
+            Thread.sleep(10);
+        }
+        SeedSharedTier tier = new SeedSharedTier(new TestSource(), shared, 1000, 1, action -> 60000L);
+        SeedCache cache = new SeedCache(tier, 10, 60000, 0);
+        cache.setExpiryLimit(tier::getExpiryLimit);
+        assertEquals("Shared answer.", cache.getData("GenomeIntent", "83333.1"));
+        // The local answer goes stale with the shared entry, not a full time-to-live later.
+        long left = cache.getTimeLeft("GenomeIntent", "83333.1");
+        assertTrue("left = " + left, left > 0 && left <= 5000);
+        // An answer from the source is not limited.
+        assertEquals("GenomeIntent:511145.12", cache.getData("GenomeIntent", "511145.12"));
+        assertTrue(cache.getTimeLeft("GenomeIntent", "511145.12") > 5000);
+        assertEquals(Long.MAX_VALUE, tier.getExpiryLimit("GenomeIntent\t511145.12"));
+    }
+
+    @Test
+    public void testTimeBox() throws IOException {
+        TestSource source = new TestSource();
+        SeedSharedTier tier = new SeedSharedTier(source, new StuckCache(), 5, 1, action -> 60000L);
+        long start = System.nanoTime();
+        assertEquals("CountIntent:genomes", tier.getData("CountIntent", "genomes"));
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("elapsed = " + elapsed, elapsed < 200);
+        assertTrue(tier.getStats(), tier.getStats().startsWith("hits=0, misses=1, timeouts=1"));
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the memory-mapped SEED snapshot.
+ */
+public class SeedSnapshotTest {
+
+    @Test
+    public void testSnapshot() throws IOException {
+        Map<String, String> counts = new HashMap<String, String>();
+        counts.put("Genomes", "There are 1000 genomes.");
+        counts.put("Proteins", "There are 4 million proteins.");
+        Map<String, String> genomes = new HashMap<String, String>();
+        for (int i = 1; i <= 500; i++) {
+            genomes.put(i + ".1", "Genome " + i + " is a bacterium.");
+        }
+        genomes.put("83333.1", "Escherichia coli K-12 has 1 contig.");
+        Map<String, Map<String, String>> data = new HashMap<String, Map<String, String>>();
+        data.put("CountIntent", counts);
+        data.put("GenomeIntent", genomes);
+        File snapFile = File.createTempFile("seed", ".snapshot");
+        snapFile.deleteOnExit();
+        SeedSnapshot.write(snapFile, System.currentTimeMillis() - 5000, data);
+        SeedSnapshot snapshot = new SeedSnapshot(snapFile);
+        assertEquals(2, snapshot.size("CountIntent"));
+        assertEquals(501, snapshot.size("GenomeIntent"));
+        assertEquals("There are 4 million proteins.", snapshot.find("CountIntent", "proteins"));
+        assertEquals("There are 1000 genomes.", snapshot.find("CountIntent", "Genomes"));
+        assertEquals("Escherichia coli K-12 has 1 contig.", snapshot.find("GenomeIntent", "83333.1"));
+        for (int i = 1; i <= 500; i++) {
+            assertEquals("Genome " + i + " is a bacterium.", snapshot.find("GenomeIntent", i + ".1"));
+        }
+        assertNull(snapshot.find("GenomeIntent", "83333.2"));
+        assertNull(snapshot.find("CountIntent", "roles"));
+        assertNull(snapshot.find("TextIntent", "protein"));
+        assertEquals(503, snapshot.getHitCount());
+        assertFalse(snapshot.isStale(60000));
+        assertTrue(snapshot.isStale(1000));
+    }
+
+}
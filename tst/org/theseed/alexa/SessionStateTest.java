@@ -0,0 +1,56 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.Session;
+
+/**
+ * Tests for the session state encoding.
+ */
+public class SessionStateTest {
+
+    @Test
+    public void testRoundTrip() {
+        Session session = Session.builder().withSessionId("test.session").build();
+        SessionState state = SessionState.load(session);
+        assertNull(state.getGenomeId());
+        state.setGenomeId("83333.1");
+        state.putFact("GenomeFeatures", "It has 4000 features.");
+        state.putFact("GenomeOther", "Tab\there.");
+        state.save(session);
+        String encoded = (String) session.getAttribute(SessionState.ATTRIBUTE);
+        assertEquals("83333.1\nf\tIt has 4000 features.\nGenomeOther\tTab here.", encoded);
+        SessionState state2 = SessionState.load(session);
+        assertEquals("83333.1", state2.getGenomeId());
+        assertEquals("It has 4000 features.", state2.getFact("GenomeFeatures"));
+        assertEquals("Tab here.", state2.getFact("GenomeOther"));
+        // Changing the genome discards the old answers.
+        state2.setGenomeId("100226.1");
+        assertNull(state2.getFact("GenomeFeatures"));
+    }
+
+    @Test
+    public void testCap() {
+        SessionState state = new SessionState();
+        state.setGenomeId("83333.1");
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            big.append('x');
+        }
+        state.putFact("GenomeName", big.toString());
+        state.putFact("GenomeContigs", big.toString());
+        state.putFact("GenomeFeatures", "short");
+        String encoded = state.encode();
+        assertTrue(encoded, encoded.length() <= 1500);
+        // The oldest answer is the one dropped.
+        SessionState state2 = SessionState.decode(encoded);
+        assertNull(state2.getFact("GenomeName"));
+        assertEquals(big.toString(), state2.getFact("GenomeContigs"));
+        assertEquals("short", state2.getFact("GenomeFeatures"));
+    }
+
+}
@@ -0,0 +1,359 @@
+package org.theseed.alexa;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class is a local stand-in for the SEED server script (svr.cgi).  It answers "action" and
+ * "parameter" queries from a fixture file, so that the skill can be tested and load-tested without
+ * the real SEED.  Point the skill at it with the "seedUrl" setting (see {@link SeedClient}).
+ *
+ * The fixture file is tab-delimited, with one query per line:  action name, parameter, and answer
+ * text.  Blank lines and lines beginning with "#" are ignored.  Parameters are matched without regard
+ * to case.  A query not in the fixture file is answered with a generic sentence, so any genome ID
+ * works.
+ *
+ * Each answer is delayed by a base latency plus an exponentially-distributed random extra latency,
+ * which gives a realistic long tail.  A configurable fraction of the queries fail with an HTTP 500
+ * error, and another fraction stall until the client gives up.  Like the real server, it compresses
+ * its answers if the client accepts gzip, and it supports the fields format (see {@link SeedResponse})
+ * when the query asks for it, including batch queries with comma-separated parameters.
+ *
+ * The following settings (see {@link SeedConfig}) control the server.
+ *
+ *  stubPort            port to listen on (default 8081)
+ *  stubFixtures        name of the fixture file (default "tst/testAssets/seedfixtures.tsv")
+ *  stubLatency         base latency in milliseconds (default 50)
+ *  stubJitter          mean extra latency in milliseconds (default 20)
+ *  stubErrorRate       fraction of queries that fail with an HTTP 500 error (default 0)
+ *  stubStallRate       fraction of queries that stall for 30 seconds (default 0)
+ */
+public class StubSeedServer {
+
+    private static final Logger log = LoggerFactory.getLogger(StubSeedServer.class);
+
+    /** milliseconds a stalled query waits before answering */
+    private static final long STALL_TIME = 30000;
+
+    /** map of action/parameter keys to answers */
+    private final Map<String, String> answers;
+    /** underlying HTTP server */
+    private final HttpServer server;
+    /** executor for request threads */
+    private final ExecutorService executor;
+    /** base latency in milliseconds */
+    private volatile long latency;
+    /** mean extra latency in milliseconds */
+    private volatile long jitter;
+    /** fraction of queries that fail */
+    private volatile double errorRate;
+    /** fraction of queries that stall */
+    private volatile double stallRate;
+    /** number of queries received */
+    private final AtomicLong queryCount;
+    /** number of queries failed on purpose */
+    private final AtomicLong errorCount;
+    /** number of queries stalled on purpose */
+    private final AtomicLong stallCount;
+
+    /**
+     * Construct a stand-in SEED server.
+     *
+     * @param answers    map of query keys (see {@link #key(String, String)}) to answers
+     * @param port       port to listen on (0 to pick any free port)
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public StubSeedServer(Map<String, String> answers, int port) throws IOException {
+        this.answers = answers;
+        this.queryCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.stallCount = new AtomicLong();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread retVal = new Thread(r, "StubSeedServer");
+            retVal.setDaemon(true);
+            return retVal;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::processQuery);
+    }
+
+    /**
+     * Specify the simulated latency.
+     *
+     * @param latency    base latency in milliseconds
+     * @param jitter     mean extra latency in milliseconds
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Specify the simulated failure rates.
+     *
+     * @param errorRate    fraction of queries that fail with an HTTP 500 error
+     * @param stallRate    fraction of queries that stall
+     */
+    public void setFailureRates(double errorRate, double stallRate) {
+        this.errorRate = errorRate;
+        this.stallRate = stallRate;
+    }
+
+    /**
+     * Start accepting queries.
+     */
+    public void start() {
+        this.server.start();
+        log.info("Stand-in SEED server listening on port {} with {} fixture answers.", this.getPort(),
+                this.answers.size());
+    }
+
+    /**
+     * Stop the server.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return the URL of the server script, suitable for the "seedUrl" setting
+     */
+    public String getUrl() {
+        return "http://localhost:" + this.getPort() + "/svr.cgi";
+    }
+
+    /**
+     * Answer a query.
+     *
+     * @param exchange    HTTP request/response exchange
+     *
+     * @throws IOException if there is a communication error
+     */
+    private void processQuery(HttpExchange exchange) throws IOException {
+        this.queryCount.incrementAndGet();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String action = query.get("action");
+        String parameter = query.get("parameter");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        long delay = this.latency;
+        if (this.jitter > 0) {
+            delay += (long) (-this.jitter * Math.log(1.0 - random.nextDouble()));
+        }
+        if (roll < this.stallRate) {
+            this.stallCount.incrementAndGet();
+            delay = STALL_TIME;
+        }
+        try {
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            if (action == null || parameter == null) {
+                send(exchange, 400, "Missing action or parameter.");
+            } else if (roll >= this.stallRate && roll < this.stallRate + this.errorRate) {
+                this.errorCount.incrementAndGet();
+                send(exchange, 500, "Simulated server error.");
+            } else if ("fields".equals(query.get("format")) && parameter.indexOf(',') >= 0) {
+                // This is a batch query:  there is one field per parameter.
+                StringBuilder body = new StringBuilder();
+                for (String item : parameter.split(",")) {
+                    body.append(item).append('\t').append(this.answer(action, item)).append('\n');
+                }
+                send(exchange, 200, body.toString());
+            } else if ("fields".equals(query.get("format"))) {
+                send(exchange, 200, "action\t" + action + "\nparameter\t" + parameter + "\n"
+                        + SeedResponse.TEXT + "\t" + this.answer(action, parameter) + "\n");
+            } else {
+                send(exchange, 200, this.answer(action, parameter));
+            }
+        } catch (InterruptedException e) {
+            // The server is stopping.
+            exchange.close();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the answer to a query
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    private String answer(String action, String parameter) {
+        String retVal = this.answers.get(key(action, parameter));
+        if (retVal == null) {
+            switch (action) {
+            case "CountIntent" :
+                retVal = "There are " + (Math.abs(parameter.hashCode()) % 100000) + " " + parameter + " in the SEED.";
+                break;
+            case "GenomeIntent" :
+                retVal = "Genome " + parameter + " is a stand-in genome with "
+                        + (Math.abs(parameter.hashCode()) % 5000 + 500) + " features.";
+                break;
+            case "GenomeName" :
+                retVal = "Genome " + parameter + " is Stand-in organism " + parameter + ".";
+                break;
+            case "GenomeContigs" :
+                retVal = "It has " + (Math.abs(parameter.hashCode()) % 200 + 1) + " contigs.";
+                break;
+            case "GenomeFeatures" :
+                retVal = "It has " + (Math.abs(parameter.hashCode()) % 5000 + 500) + " features.";
+                break;
+            case "GenomeSubsystems" :
+                retVal = (Math.abs(parameter.hashCode()) % 60 + 20) + " percent of its features are in subsystems.";
+                break;
+            default :
+                retVal = "No information is available for " + parameter + ".";
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return a map of the parameters in a query string.  Both ";" and "&" are accepted as separators.
+     *
+     * @param rawQuery    raw query string from the URL, or NULL if there is none
+     *
+     * @throws IOException if the query string is not properly encoded
+     */
+    protected static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> retVal = new HashMap<String, String>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("[;&]")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    retVal.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the key for a query in the answer map
+     *
+     * @param action       name of the action
+     * @param parameter    parameter for the action
+     */
+    public static String key(String action, String parameter) {
+        return action + "\t" + parameter.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return a map of query keys to answers read from a fixture file
+     *
+     * @param inStream    stream containing the fixture file
+     *
+     * @throws IOException if there is an error reading the stream
+     */
+    public static Map<String, String> readFixtures(InputStream inStream) throws IOException {
+        Map<String, String> retVal = new HashMap<String, String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, StandardCharsets.UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (! line.isEmpty() && line.charAt(0) != '#') {
+                String[] fields = line.split("\t", 3);
+                if (fields.length != 3) {
+                    throw new IOException("Invalid fixture line: " + line);
+                }
+                retVal.put(key(fields[0], fields[1]), fields[2]);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Send a plain-text response.
+     *
+     * @param exchange    HTTP request/response exchange
+     * @param status      HTTP status code
+     * @param text        response text
+     *
+     * @throws IOException if there is a communication error
+     */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip")) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length);
+            try (GZIPOutputStream zipper = new GZIPOutputStream(buffer)) {
+                zipper.write(body);
+            }
+            body = buffer.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return a printable summary of the server statistics
+     */
+    public String getStats() {
+        return String.format("queries=%d, errors=%d, stalls=%d", this.queryCount.get(), this.errorCount.get(),
+                this.stallCount.get());
+    }
+
+    /**
+     * Run the stand-in server until the JVM is terminated.
+     *
+     * @param args    optional port number (overrides the "stubPort" setting)
+     *
+     * @throws IOException if the fixture file cannot be read or the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0 ? Integer.parseInt(args[0]) : SeedConfig.getInt("stubPort", 8081));
+        String fixtureFile = SeedConfig.getString("stubFixtures", "tst/testAssets/seedfixtures.tsv");
+        Map<String, String> answers;
+        try (InputStream inStream = Files.newInputStream(Paths.get(fixtureFile))) {
+            answers = readFixtures(inStream);
+        }
+        final StubSeedServer server = new StubSeedServer(answers, port);
+        server.setLatency(SeedConfig.getLong("stubLatency", 50), SeedConfig.getLong("stubJitter", 20));
+        server.setFailureRates(Double.parseDouble(SeedConfig.getString("stubErrorRate", "0")),
+                Double.parseDouble(SeedConfig.getString("stubStallRate", "0")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Stand-in SEED server stopped.  {}", server.getStats());
+            server.stop();
+        }, "StubSeedServerShutdown"));
+        server.start();
+    }
+
+}
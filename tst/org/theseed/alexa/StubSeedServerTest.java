@@ -0,0 +1,65 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the stand-in SEED server.
+ */
+public class StubSeedServerTest {
+
+    @Test
+    public void testQueries() throws IOException {
+        Map<String, String> answers;
+        try (InputStream inStream = Files.newInputStream(Paths.get("testAssets", "seedfixtures.tsv"))) {
+            answers = StubSeedServer.readFixtures(inStream);
+        }
+        StubSeedServer server = new StubSeedServer(answers, 0);
+        server.setLatency(0, 0);
+        server.start();
+        try {
+            String url = server.getUrl() + "?" + SeedClient.formatQuery("CountIntent", "Genomes");
+            assertEquals("There are 32412 genomes in the SEED.", call(url, 200));
+            url = server.getUrl() + "?" + SeedClient.formatQuery("GenomeIntent", "12345.6");
+            assertTrue(call(url, 200).startsWith("Genome 12345.6 "));
+            call(server.getUrl() + "?action=CountIntent", 400);
+            server.setFailureRates(1.0, 0.0);
+            call(url, 500);
+            assertEquals("queries=4, errors=1, stalls=0", server.getStats());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testParseQuery() throws IOException {
+        Map<String, String> query = StubSeedServer.parseQuery("action=GenomeIntent;parameter=83333.1&x=a+b");
+        assertEquals("GenomeIntent", query.get("action"));
+        assertEquals("83333.1", query.get("parameter"));
+        assertEquals("a b", query.get("x"));
+        assertTrue(StubSeedServer.parseQuery(null).isEmpty());
+    }
+
+    private static String call(String url, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(expectedStatus, connection.getResponseCode());
+        InputStream in = (expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.readLine();
+        }
+    }
+
+}
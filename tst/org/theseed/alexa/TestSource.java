@@ -0,0 +1,45 @@
+package org.theseed.alexa;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple mock implementation of the {@code SeedSource} interface.  Each answer
+ * is the action and parameter separated by a colon.  Setters are provided to add
+ * a delay or make the source fail, and the number of calls is counted.
+ */
+public class TestSource implements SeedSource {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long delay = 0;
+    private volatile boolean failing = false;
+
+    @Override
+    public String getData(String action, String parameter) throws IOException {
+        calls.incrementAndGet();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted.");
+            }
+        }
+        if (failing) {
+            throw new IOException("Test failure.");
+        }
+        return action + ":" + parameter;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public void setDelay(long value) {
+        delay = value;
+    }
+
+    public void setFailing(boolean value) {
+        failing = value;
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.theseed.alexa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the traffic capture log.
+ */
+public class TrafficCaptureTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = File.createTempFile("traffic", ".cap");
+        file.deleteOnExit();
+        file.delete();
+        byte[] genome = Files.readAllBytes(Paths.get("testAssets", "genometest.json"));
+        byte[] launch = Files.readAllBytes(Paths.get("testAssets", "launchtest.json"));
+        TrafficCapture capture = new TrafficCapture(file, 100);
+        capture.record(genome, genome.length, 2500000, 2000000, 321);
+        // Only the given length of the buffer is captured.
+        byte[] buffer = new byte[launch.length + 100];
+        System.arraycopy(launch, 0, buffer, 0, launch.length);
+        capture.record(buffer, launch.length, 100000, 0, 123);
+        capture.close();
+        // Appending to an existing log does not write a second header.
+        capture = new TrafficCapture(file, 100);
+        capture.record(genome, genome.length, 1000, 0, 1);
+        capture.close();
+        List<TrafficCapture.Record> records = TrafficCapture.read(file);
+        assertEquals(3, records.size());
+        TrafficCapture.Record record = records.get(0);
+        assertEquals("IntentRequest", record.getType());
+        assertEquals("GenomeIntent", record.getName());
+        assertEquals("TaxonId=100226,Version=1", record.getSlots());
+        assertEquals(2500, record.getTotalMicros());
+        assertEquals(2000, record.getBackendMicros());
+        assertEquals(321, record.getResponseBytes());
+        // The user ID is hashed in the captured envelope.
+        String request = record.getRequest();
+        assertFalse(request, request.contains("user-1-test"));
+        assertTrue(request, request.contains("\"userId\":\"anon-"));
+        assertTrue(request, request.contains("\"value\":\"100226\""));
+        assertEquals(request, records.get(2).getRequest());
+        record = records.get(1);
+        assertEquals("LaunchRequest", record.getName());
+        assertEquals("", record.getSlots());
+    }
+
+    @Test
+    public void testRedaction() {
+        byte[] request = ("{\"session\":{\"user\":{\"userId\":\"u1\",\"accessToken\":\"secret\"}},"
+                + "\"context\":{\"System\":{\"apiAccessToken\":\"secret2\",\"device\":{\"deviceId\":\"d1\"}}},"
+                + "\"request\":{\"type\":\"LaunchRequest\",\"locale\":\"en-US\"}}").getBytes(StandardCharsets.UTF_8);
+        String redacted = new String(TrafficCapture.redact(request, request.length), StandardCharsets.UTF_8);
+        assertFalse(redacted, redacted.contains("secret"));
+        assertFalse(redacted, redacted.contains("\"u1\""));
+        assertFalse(redacted, redacted.contains("\"d1\""));
+        assertTrue(redacted, redacted.contains("\"accessToken\":\"\""));
+        assertTrue(redacted, redacted.contains("\"locale\":\"en-US\""));
+        // The same user always gets the same hash.
+        assertEquals(redacted, new String(TrafficCapture.redact(request, request.length), StandardCharsets.UTF_8));
+        byte[] broken = "{\"request\":".getBytes(StandardCharsets.UTF_8);
+        assertNull(TrafficCapture.redact(broken, broken.length));
+    }
+
+}